@@ -25,6 +25,7 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class LightProto {
@@ -37,11 +38,17 @@ public class LightProto {
     private final List<LightProtoMessage> messages;
 
     public LightProto(Proto proto, String outerClassName, boolean useOuterClass) {
+        this(proto, outerClassName, useOuterClass, false, Collections.emptySet(), false);
+    }
+
+    public LightProto(Proto proto, String outerClassName, boolean useOuterClass, boolean tableDriven,
+                      Set<String> unrolledMessages, boolean copyUnmodifiedFields) {
         this.proto = proto;
         this.outerClassName = outerClassName;
         this.useOuterClass = useOuterClass;
         this.enums = proto.getEnumGroups().stream().map(LightProtoEnum::new).collect(Collectors.toList());
-        this.messages = proto.getMessages().stream().map(m -> new LightProtoMessage(m, useOuterClass)).collect(Collectors.toList());
+        this.messages = proto.getMessages().stream().map(m -> new LightProtoMessage(m, useOuterClass, tableDriven, unrolledMessages,
+                copyUnmodifiedFields)).collect(Collectors.toList());
     }
 
     public List<File> generate(File directory) throws IOException {
@@ -79,6 +86,7 @@ public class LightProto {
 
             formatAndWrite(file, sw.toString());
             log.info("LightProto generated class {}", file);
+            reportMethodSizes(m);
             generatedFiles.add(file);
         }
 
@@ -103,9 +111,20 @@ public class LightProto {
         formatAndWrite(outFile, sw.toString());
 
         log.info("LightProto generated {}", outFile);
+        messages.forEach(this::reportMethodSizes);
         return Collections.singletonList(outFile);
     }
 
+    private void reportMethodSizes(LightProtoMessage m) {
+        // The sizes are estimated from the generated source, as the classes are not compiled at this point
+        log.debug("LightProto estimated bytecode sizes of {}: {}", m.getName(), m.getMethodSizes());
+        m.getMethodSizes().forEach((method, size) -> {
+            if (size > LightProtoMessage.METHOD_SIZE_LIMIT) {
+                log.warn("LightProto generated method {}.{} is too large to be JIT compiled ({} bytes)", m.getName(), method, size);
+            }
+        });
+    }
+
     private void formatAndWrite(File file, String content) throws IOException {
         String formattedCode = Roaster.format(content);
         try (Writer w = Files.newBufferedWriter(file.toPath())) {
@@ -35,8 +35,57 @@ public abstract class LightProtoAbstractRepeated<FieldType extends Field<?>> ext
 
     public void fieldClear(PrintWriter w, String enclosingType) {
         w.format("        public %s %s() {\n", enclosingType, Util.camelCase("clear", field.getName()));
+        w.format("            _nonEmptyFields%d &= ~%s;\n", bitFieldIndex(), fieldMask());
+        w.format("            _fieldModified(%d);\n", index);
         clear(w);
         w.format("            return this;\n");
         w.format("        }\n");
     }
+
+    /**
+     * Records the index of each occurrence of the field in the view, as an item.
+     */
+    @Override
+    public void viewScan(PrintWriter w) {
+        w.format("case %s:\n", tagName());
+        w.format("    _addItemIdx(%d, LightProtoCodec.skipVarInt(_buffer, _idx));\n", index);
+        w.format("    break;\n");
+    }
+
+    /**
+     * Generates the view getter of the number of items of the field.
+     */
+    protected void viewCountGetter(PrintWriter w) {
+        w.format("public int %s() {\n", Util.camelCase("get", pluralName, "count"));
+        w.format("    return _itemsCount(%d);\n", index);
+        w.format("}\n");
+    }
+
+    /**
+     * Generates a view getter reading the item at the given index, whose value starts at _idx.
+     */
+    protected void viewItemGetter(PrintWriter w, String type, String name, Runnable readValue) {
+        w.format("public %s %s(int idx) {\n", type, name);
+        w.format("    if (idx < 0 || idx >= _itemsCount(%d)) {\n", index);
+        w.format("        throw LightProtoCodec.indexOutOfBounds(idx, _itemsCount(%d), \"%s\");\n", index, field.getName());
+        w.format("    }\n");
+        w.format("    int _idx = _itemIdxs[%d][idx];\n", index);
+        readValue.run();
+        w.format("}\n");
+    }
+
+    /**
+     * Generates the marking of the field as holding items, for clear() to only reset the non-empty repeated fields.
+     */
+    protected void setNonEmpty(PrintWriter w) {
+        w.format("    _nonEmptyFields%d |= %s;\n", bitFieldIndex(), fieldMask());
+    }
+
+    /**
+     * Returns the name of the private method adding an item, used when parsing, which unlike the public adder does
+     * not track the field as modified.
+     */
+    protected String internalAdder() {
+        return "_" + Util.camelCase("add", singularName);
+    }
 }
@@ -30,7 +30,7 @@ public class LightProtoBooleanField extends LightProtoNumberField {
         w.format("        public %s %s() {\n", field.getJavaType(), Util.camelCase("is", ccName));
         if (!field.isDefaultValueSet()) {
             w.format("            if (!%s()) {\n", Util.camelCase("has", ccName));
-            w.format("                throw new IllegalStateException(\"Field '%s' is not set\");\n", field.getName());
+            w.format("                throw LightProtoCodec.fieldNotSet(\"%s\");\n", field.getName());
             w.format("            }\n");
         }
         w.format("            return %s;\n", ccName);
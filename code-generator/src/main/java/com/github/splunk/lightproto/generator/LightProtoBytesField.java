@@ -39,6 +39,13 @@ public class LightProtoBytesField extends LightProtoField<Field.Bytes> {
         w.format("_buffer.skipBytes(_%sLen);\n", ccName);
     }
 
+    @Override
+    public void parseAt(PrintWriter w) {
+        getLengthAt(w, "_" + ccName + "Len", "_" + ccName + "Len");
+        w.format("_%sIdx = _idx - _base;\n", ccName);
+        w.format("_idx += _%sLen;\n", ccName);
+    }
+
     @Override
     public void copy(PrintWriter w) {
         w.format("%s(_other.%s());\n", Util.camelCase("set", ccName), Util.camelCase("get", ccName));
@@ -56,7 +63,7 @@ public class LightProtoBytesField extends LightProtoField<Field.Bytes> {
         w.format("    _bitField%d |= %s;\n", bitFieldIndex(), fieldMask());
         w.format("    _%sIdx = -1;\n", ccName);
         w.format("    _%sLen = %s.readableBytes();\n", ccName, ccName);
-        w.format("    _cachedSize = -1;\n");
+        w.format("    _fieldModified(%d);\n", index);
         w.format("    return this;\n");
         w.format("}\n");
     }
@@ -65,7 +72,7 @@ public class LightProtoBytesField extends LightProtoField<Field.Bytes> {
     public void getter(PrintWriter w) {
         w.format("public int %s() {\n", Util.camelCase("get", ccName, "size"));
         w.format("    if (!%s()) {\n", Util.camelCase("has", ccName));
-        w.format("        throw new IllegalStateException(\"Field '%s' is not set\");\n", field.getName());
+        w.format("        throw LightProtoCodec.fieldNotSet(\"%s\");\n", field.getName());
         w.format("    }\n");
         w.format("    return _%sLen;\n", ccName);
         w.format("}\n");
@@ -79,12 +86,12 @@ public class LightProtoBytesField extends LightProtoField<Field.Bytes> {
 
         w.format("public io.netty.buffer.ByteBuf %s() {\n", Util.camelCase("get", ccName, "slice"));
         w.format("    if (!%s()) {\n", Util.camelCase("has", ccName));
-        w.format("        throw new IllegalStateException(\"Field '%s' is not set\");\n", field.getName());
+        w.format("        throw LightProtoCodec.fieldNotSet(\"%s\");\n", field.getName());
         w.format("    }\n");
         w.format("    if (%s == null) {\n", ccName);
         w.format("        return _parsedBuffer.slice(_%sIdx, _%sLen);\n", ccName, ccName);
         w.format("    } else {\n");
-        w.format("        return %s.slice(0, _%sLen);\n", ccName, ccName);
+        w.format("        return %s.slice(%s.readerIndex(), _%sLen);\n", ccName, ccName, ccName);
         w.format("    }\n");
         w.format("}\n");
     }
@@ -102,16 +109,44 @@ public class LightProtoBytesField extends LightProtoField<Field.Bytes> {
         w.format("_size += LightProtoCodec.computeVarIntSize(_%sLen) + _%sLen;\n", ccName, ccName);
     }
 
+    @Override
+    public void editor(PrintWriter w) {
+        appender(w, ccName, "io.netty.buffer.ByteBuf", ccName + ".readableBytes()", "LightProtoCodec.computeVarIntSize(_len) + _len", () -> {
+            w.format("    _idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, _len);\n", tagName(), tagName());
+            w.format("    _b.setBytes(_idx, %s, %s.readerIndex(), _len);\n", ccName, ccName);
+            w.format("    _idx += _len;\n");
+        });
+    }
+
+    @Override
+    public void peek(PrintWriter w) {
+        // The returned slice shares the content of the serialized message
+        peeker(w, "io.netty.buffer.ByteBuf", "", "null", () -> {
+            w.format("    int _len = LightProtoCodec.getVarInt(_buffer, _valueIdx);\n");
+            w.format("    return _buffer.slice(_valueIdx + LightProtoCodec.computeVarUIntSize(_len), _len);\n");
+        });
+    }
+
+    @Override
+    public void viewGetter(PrintWriter w) {
+        viewGetter(w, "int", Util.camelCase("get", ccName, "size"), null, () -> {
+            w.format("        return LightProtoCodec.getVarInt(_buffer, _idx);\n");
+        });
+        viewGetter(w, "io.netty.buffer.ByteBuf", Util.camelCase("get", ccName, "slice"), null, () -> {
+            w.format("        return _buffer.slice(LightProtoCodec.skipVarInt(_buffer, _idx), LightProtoCodec.getVarInt(_buffer, _idx));\n");
+        });
+    }
+
     @Override
     public void serialize(PrintWriter w) {
-        w.format("LightProtoCodec.writeVarInt(_b, %s);\n", tagName());
-        w.format("LightProtoCodec.writeVarInt(_b, _%sLen);\n", ccName);
+        w.format("_idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, _%sLen);\n", tagName(), tagName(), ccName);
 
         w.format("if (_%sIdx == -1) {\n", ccName);
-        w.format("    _b.writeBytes(%s);\n", ccName);
+        w.format("    _b.setBytes(_idx, %s, %s.readerIndex(), _%sLen);\n", ccName, ccName, ccName);
         w.format("} else {\n");
-        w.format("    _parsedBuffer.getBytes(_%sIdx, _b, _%sLen);\n", ccName, ccName);
+        w.format("    _b.setBytes(_idx, _parsedBuffer, _%sIdx, _%sLen);\n", ccName, ccName);
         w.format("}\n");
+        w.format("_idx += _%sLen;\n", ccName);
     }
 
 
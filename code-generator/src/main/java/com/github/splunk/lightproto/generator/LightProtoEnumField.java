@@ -27,10 +27,34 @@ public class LightProtoEnumField extends LightProtoNumberField {
 
     @Override
     public void parse(PrintWriter w) {
+        w.format("int _%sIdx = _buffer.readerIndex();\n", ccName);
         w.format("%s _%s = %s;\n", field.getJavaType(), ccName, parseNumber(field));
         w.format("if (_%s != null) {\n", ccName);
         w.format("    _bitField%d |= %s;\n", bitFieldIndex(), fieldMask());
         w.format("    %s = _%s;\n", ccName, ccName);
+        w.format("} else {\n");
+        addUnknownValue(w, tagName(), "_" + ccName + "Idx", "_buffer.readerIndex()", "");
         w.format("}\n");
     }
+
+    @Override
+    public void parseAt(PrintWriter w) {
+        w.format("int _%sIdx = _idx;\n", ccName);
+        getNumberAt(w, field, "_" + ccName);
+        w.format("if (_%s != null) {\n", ccName);
+        w.format("    _bitField%d |= %s;\n", bitFieldIndex(), fieldMask());
+        w.format("    %s = _%s;\n", ccName, ccName);
+        w.format("} else {\n");
+        addUnknownValue(w, tagName(), "_" + ccName + "Idx", "_idx", " - _base");
+        w.format("}\n");
+    }
+
+    /**
+     * Generates the code keeping a value with no matching enum constant as an unknown field, so that it is written
+     * back when re-serializing the message. The range starts at the tag preceding the value, and is shifted by
+     * <code>base</code> from the cursor.
+     */
+    static void addUnknownValue(PrintWriter w, String tagName, String valueIdx, String endIdx, String base) {
+        w.format("    _addUnknownField(%s%s - %s_SIZE, %s - %s + %s_SIZE);\n", valueIdx, base, tagName, endIdx, valueIdx, tagName);
+    }
 }
@@ -32,10 +32,17 @@ public abstract class LightProtoField<FieldType extends Field<?>> {
         this.ccName = Util.camelCase(field.getName());
     }
 
-    public static LightProtoField create(Field field, int index) {
+    /**
+     * @param tableDrivenType whether the field is a message field of a table-driven type, which is only parsed from
+     *                        a ByteBuf
+     */
+    public static LightProtoField create(Field field, int index, boolean tableDrivenType) {
         if (field.isRepeated()) {
             if (field.isMessageField()) {
-                return new LightProtoRepeatedMessageField((MessageField) field, index);
+                if (isLazy(field)) {
+                    return new LightProtoLazyRepeatedMessageField((MessageField) field, index);
+                }
+                return new LightProtoRepeatedMessageField((MessageField) field, index, tableDrivenType);
             } else if (field.isStringField()) {
                 return new LightProtoRepeatedStringField((Field.String) field, index);
             } else if (field.isEnumField()) {
@@ -46,7 +53,10 @@ public abstract class LightProtoField<FieldType extends Field<?>> {
                 return new LightProtoRepeatedBytesField((Field.Bytes) field, index);
             }
         } else if (field.isMessageField()) {
-            return new LightProtoMessageField((MessageField) field, index);
+            if (isLazy(field)) {
+                return new LightProtoLazyMessageField((MessageField) field, index);
+            }
+            return new LightProtoMessageField((MessageField) field, index, tableDrivenType);
         } else if (field.isBytesField()) {
             return new LightProtoBytesField((Field.Bytes) field, index);
         } else if (field.isStringField()) {
@@ -62,6 +72,10 @@ public abstract class LightProtoField<FieldType extends Field<?>> {
         throw new IllegalArgumentException("Unknown field: " + field);
     }
 
+    private static boolean isLazy(Field<?> field) {
+        return field.getOption("lazy") == Boolean.TRUE;
+    }
+
     public int index() {
         return index;
     }
@@ -87,10 +101,9 @@ public abstract class LightProtoField<FieldType extends Field<?>> {
     public void tags(PrintWriter w) {
         w.format("        private static final int %s = %d;\n", fieldNumber(), field.getNumber());
         w.format("        private static final int %s = (%s << LightProtoCodec.TAG_TYPE_BITS) | %s;\n", tagName(), fieldNumber(), typeTag());
-        w.format("        private static final int %s_SIZE = LightProtoCodec.computeVarIntSize(%s);\n", tagName(), tagName());
-        if (!field.isRepeated()) {
-            w.format("        private static final int %s = 1 << (%d %% 32);\n", fieldMask(), index);
-        }
+        w.format("        private static final int %s_SIZE = LightProtoCodec.computeVarUIntSize(%s);\n", tagName(), tagName());
+        w.format("        private static final long %s_BYTES = LightProtoCodec.encodeTag(%s);\n", tagName(), tagName());
+        w.format("        private static final int %s = 1 << (%d %% 32);\n", fieldMask(), index);
     }
 
     public void has(PrintWriter w) {
@@ -104,6 +117,7 @@ public abstract class LightProtoField<FieldType extends Field<?>> {
     public void fieldClear(PrintWriter w, String enclosingType) {
         w.format("        public %s %s() {\n", enclosingType, Util.camelCase("clear", field.getName()));
         w.format("            _bitField%d &= ~%s;\n", bitFieldIndex(), fieldMask());
+        w.format("            _fieldModified(%d);\n", index);
         clear(w);
         w.format("            return this;\n");
         w.format("        }\n");
@@ -119,17 +133,174 @@ public abstract class LightProtoField<FieldType extends Field<?>> {
 
     abstract public void parse(PrintWriter w);
 
+    /**
+     * Same as {@link #parse(PrintWriter)}, reading at the absolute index <code>_idx</code> and advancing it, instead
+     * of reading from the buffer reader index, in a message ending at <code>_endIdx</code>. The generated code works
+     * on either a <code>ByteBuf</code> or its backing array, where the buffer indexes are shifted by
+     * <code>_base</code>.
+     */
+    abstract public void parseAt(PrintWriter w);
+
     abstract public void copy(PrintWriter w);
 
+    /**
+     * Generates the static methods editing the field directly in a serialized message.
+     */
+    public void editor(PrintWriter w) {
+    }
+
+    /**
+     * Generates the static methods reading the field directly from a serialized message, without parsing it.
+     */
+    public void peek(PrintWriter w) {
+    }
+
+    /**
+     * Generates the code assigning the length prefix at _idx, and moving _idx past it, with the varint decoded once.
+     * The length is checked against the message end, _endIdx. The local variable holding the decoded varint is named
+     * after the given name.
+     */
+    protected static void getLengthAt(PrintWriter w, String assignment, String name) {
+        w.format("long %sAndIdx = LightProtoCodec.getVarIntAndIdx(_buffer, _idx);\n", name);
+        w.format("_idx = (int) (%sAndIdx >>> 32);\n", name);
+        w.format("%s = LightProtoCodec.checkLength((int) %sAndIdx, _idx, _endIdx);\n", assignment, name);
+    }
+
+    /**
+     * Generates a static peek method, scanning the message for the value of the last occurrence of the field, at
+     * _valueIdx. The buffer is only read with absolute getters, so that it can be peeked concurrently.
+     */
+    protected void peeker(PrintWriter w, String type, String args, String absentValue, Runnable readValue) {
+        w.format("public static %s %s(io.netty.buffer.ByteBuf _buffer, int _offset, int _length%s) {\n", type,
+                Util.camelCase("peek", ccName), args);
+        w.format("    int _endIdx = _offset + _length;\n");
+        w.format("    int _valueIdx = -1;\n");
+        w.format("    int _idx = _offset;\n");
+        w.format("    while (_idx < _endIdx) {\n");
+        w.format("        int _tag = LightProtoCodec.getTag(_buffer, _idx);\n");
+        w.format("        _idx += LightProtoCodec.computeVarUIntSize(_tag);\n");
+        w.format("        if (_tag == %s) {\n", tagName());
+        w.format("            _valueIdx = _idx;\n");
+        w.format("        }\n");
+        w.format("        _idx = LightProtoCodec.skipUnknownField(_tag, _buffer, _idx, _endIdx);\n");
+        w.format("    }\n");
+        w.format("    if (_idx > _endIdx) {\n");
+        w.format("        throw new IllegalArgumentException(\"Malformed message\");\n");
+        w.format("    }\n");
+        w.format("    if (_valueIdx == -1) {\n");
+        w.format("        return %s;\n", absentValue);
+        w.format("    }\n");
+        readValue.run();
+        w.format("}\n");
+    }
+
+    /**
+     * Generates the case of the view scan recording the field found at _idx, whose value starts after its tag and
+     * ends at _fieldEndIdx. Only the index of the last occurrence of a singular field is kept.
+     */
+    public void viewScan(PrintWriter w) {
+        w.format("case %s:\n", tagName());
+        w.format("    _fieldIdxs[%d] = LightProtoCodec.skipVarInt(_buffer, _idx);\n", index);
+        w.format("    break;\n");
+    }
+
+    /**
+     * Generates the getters of the read-only view, decoding the field straight from the serialized message.
+     */
+    public void viewGetter(PrintWriter w) {
+    }
+
+    /**
+     * Generates a view getter reading the last occurrence of the field, whose index is found in the view offsets
+     * table, and falling back to the default value, if any, when the field is absent.
+     */
+    protected void viewGetter(PrintWriter w, String type, String name, String defaultValue, Runnable readValue) {
+        w.format("public %s %s() {\n", type, name);
+        w.format("    int _idx = _fieldIdx(%d);\n", index);
+        w.format("    if (_idx != -1) {\n");
+        readValue.run();
+        w.format("    }\n");
+        if (defaultValue != null) {
+            w.format("    return %s;\n", defaultValue);
+        } else {
+            w.format("    throw LightProtoCodec.fieldNotSet(\"%s\");\n", field.getName());
+        }
+        w.format("}\n");
+    }
+
+    /**
+     * Generates a static method appending an occurrence of the field at the writer index, which by the last-wins rule
+     * overrides the previous value of a singular field, or adds an item to a repeated field.
+     */
+    protected void appender(PrintWriter w, String name, String type, String len, String valueSize, Runnable writeValue) {
+        w.format("public static int %s(io.netty.buffer.ByteBuf _b, %s %s) {\n", Util.camelCase("append", name), type, name);
+        if (len != null) {
+            w.format("    int _len = %s;\n", len);
+        }
+        w.format("    int _size = %s_SIZE + %s;\n", tagName(), valueSize);
+        w.format("    _b.ensureWritable(_size);\n");
+        w.format("    int _idx = _b.writerIndex();\n");
+        writeValue.run();
+        w.format("    _b.writerIndex(_idx);\n");
+        w.format("    return _size;\n");
+        w.format("}\n");
+    }
+
+    /**
+     * Returns whether the field holds numbers, which table-driven messages parse and serialize with the shared codec.
+     * The other fields are handled by their generated code.
+     */
+    public boolean isNumber() {
+        return false;
+    }
+
+    /**
+     * Returns the kind and flags of the field in the schema table of table-driven messages.
+     */
+    public String tableKind() {
+        return "LightProtoCodec.KIND_CUSTOM";
+    }
+
+    /**
+     * Generates the code of a table-driven message setting the number field from its raw <code>_value</code>, which
+     * returns false when the value is rejected.
+     */
+    public void tableSetter(PrintWriter w) {
+    }
+
+    /**
+     * Generates the code of a table-driven message returning the raw value of the number field, or of its item at
+     * <code>_index</code> if repeated.
+     */
+    public void tableGetter(PrintWriter w) {
+    }
+
+    /**
+     * Generates the code of a table-driven message returning the number of values of the number field.
+     */
+    public void tableCount(PrintWriter w) {
+    }
+
     public boolean isPackable() {
         return field.isRepeated() && field.isPackable();
     }
 
+    public boolean isPacked() {
+        return isPackable() && field.getOption("packed") == Boolean.TRUE;
+    }
+
     public void parsePacked(PrintWriter w) {
     }
 
+    public void parsePackedAt(PrintWriter w) {
+    }
+
     abstract protected String typeTag();
 
+    protected String fieldSetConstant() {
+        return Util.upperCase("field", field.getName());
+    }
+
     protected String tagName() {
         return "_" + Util.upperCase(field.getName(), "tag");
     }
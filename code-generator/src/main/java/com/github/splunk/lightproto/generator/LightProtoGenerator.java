@@ -34,6 +34,19 @@ public class LightProtoGenerator {
 
     public static List<File> generate(List<File> inputs, File outputDirectory,
                                       String classPrefix, boolean useOuterClass) throws Exception {
+        return generate(inputs, outputDirectory, classPrefix, useOuterClass, false, Collections.emptySet(), false);
+    }
+
+    /**
+     * @param tableDriven whether the messages are parsed and serialized by the shared table-driven codec, instead of
+     *                    their own unrolled code
+     * @param unrolledMessages names of the messages keeping their unrolled code in the table-driven mode
+     * @param copyUnmodifiedFields whether re-serializing a parsed message copies its unmodified fields from the
+     *                             parsed buffer, instead of encoding them again
+     */
+    public static List<File> generate(List<File> inputs, File outputDirectory, String classPrefix,
+                                      boolean useOuterClass, boolean tableDriven,
+                                      Set<String> unrolledMessages, boolean copyUnmodifiedFields) throws Exception {
         List<File> generatedFiles = new ArrayList<>();
         Set<String> javaPackages = new HashSet<>();
 
@@ -48,7 +61,8 @@ public class LightProtoGenerator {
             String javaDir = Joiner.on('/').join(javaPackageName.split("\\."));
             Path targetDir = Paths.get(String.format("%s/%s", outputDirectory, javaDir));
 
-            LightProto lightProto = new LightProto(proto, outerClassName, useOuterClass);
+            LightProto lightProto = new LightProto(proto, outerClassName, useOuterClass, tableDriven, unrolledMessages,
+                    copyUnmodifiedFields);
             generatedFiles.addAll(lightProto.generate(targetDir.toFile()));
 
             javaPackages.add(javaPackageName);
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.generator;
+
+import io.protostuff.parser.MessageField;
+
+import java.io.PrintWriter;
+
+/**
+ * Message field declared with the <code>[lazy = true]</code> option.
+ *
+ * <p>Parsing only records the position of the nested message in the parsed buffer. The nested message is parsed on
+ * first access and, until then, serialization copies its original bytes.
+ */
+public class LightProtoLazyMessageField extends LightProtoMessageField {
+
+    public LightProtoLazyMessageField(MessageField field, int index) {
+        super(field, index, false);
+    }
+
+    @Override
+    public void declaration(PrintWriter w) {
+        super.declaration(w);
+        w.format("private int _%sBufferIdx = -1;\n", ccName);
+        w.format("private int _%sBufferLen = -1;\n", ccName);
+    }
+
+    @Override
+    public void setter(PrintWriter w, String enclosingType) {
+        w.format("public %s %s() {\n", field.getJavaType(), Util.camelCase("set", ccName));
+        w.format("    if (_%sBufferIdx != -1) {\n", ccName);
+        w.format("        %s();\n", materializeMethod());
+        w.format("    } else if (%s == null) {\n", ccName);
+        w.format("        %s = new %s();\n", ccName, field.getJavaType());
+        w.format("        %s._setParent(this, %d);\n", ccName, index);
+        w.format("    }\n");
+        w.format("    _bitField%d |= %s;\n", bitFieldIndex(), fieldMask());
+        w.format("    _fieldModified(%d);\n", index);
+        w.format("    return %s;\n", ccName);
+        w.format("}\n");
+
+        w.format("private void %s() {\n", materializeMethod());
+        w.format("    if (%s == null) {\n", ccName);
+        w.format("        %s = new %s();\n", ccName, field.getJavaType());
+        w.format("        %s._setParent(this, %d);\n", ccName, index);
+        w.format("    }\n");
+        w.format("    %s.parseFrom(_parsedBuffer, _%sBufferIdx, _%sBufferLen);\n", ccName, ccName, ccName);
+        w.format("    _%sBufferIdx = -1;\n", ccName);
+        // The re-serialized message is not guaranteed to have the same size as the original bytes
+        w.format("    _clearCachedSize();\n");
+        w.format("}\n");
+    }
+
+    @Override
+    public void copy(PrintWriter w) {
+        w.format("%s().copyFrom(_other.%s());\n", Util.camelCase("set", ccName), Util.camelCase("get", ccName));
+    }
+
+    @Override
+    public void getter(PrintWriter w) {
+        w.format("public %s %s() {\n", field.getJavaType(), Util.camelCase("get", field.getName()));
+        w.format("    if (!%s()) {\n", Util.camelCase("has", ccName));
+        w.format("        throw LightProtoCodec.fieldNotSet(\"%s\");\n", field.getName());
+        w.format("    }\n");
+        w.format("    if (_%sBufferIdx != -1) {\n", ccName);
+        w.format("        %s();\n", materializeMethod());
+        w.format("    }\n");
+        w.format("    return %s;\n", ccName);
+        w.format("}\n");
+    }
+
+    @Override
+    public void parse(PrintWriter w) {
+        w.format("_%sBufferLen = LightProtoCodec.readVarInt(_buffer);\n", ccName);
+        w.format("_%sBufferIdx = _buffer.readerIndex();\n", ccName);
+        w.format("_buffer.skipBytes(_%sBufferLen);\n", ccName);
+    }
+
+    @Override
+    public void parseAt(PrintWriter w) {
+        getLengthAt(w, "_" + ccName + "BufferLen", "_" + ccName + "BufferLen");
+        w.format("_%sBufferIdx = _idx - _base;\n", ccName);
+        w.format("_idx += _%sBufferLen;\n", ccName);
+    }
+
+    @Override
+    public void serializedSize(PrintWriter w) {
+        w.format("if (_%sBufferIdx != -1) {\n", ccName);
+        w.format("    _size += %s_SIZE;\n", tagName());
+        w.format("    _size += LightProtoCodec.computeVarIntSize(_%sBufferLen) + _%sBufferLen;\n", ccName, ccName);
+        w.format("} else {\n");
+        super.serializedSize(w);
+        w.format("}\n");
+    }
+
+    @Override
+    public void serialize(PrintWriter w) {
+        w.format("if (_%sBufferIdx != -1) {\n", ccName);
+        w.format("    _idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, _%sBufferLen);\n", tagName(), tagName(), ccName);
+        w.format("    _b.setBytes(_idx, _parsedBuffer, _%sBufferIdx, _%sBufferLen);\n", ccName, ccName);
+        w.format("    _idx += _%sBufferLen;\n", ccName);
+        w.format("} else {\n");
+        super.serialize(w);
+        w.format("}\n");
+    }
+
+    @Override
+    public void clear(PrintWriter w) {
+        w.format("if (%s() && _%sBufferIdx == -1) {\n", Util.camelCase("has", ccName), ccName);
+        w.format("    %s.clear();\n", ccName);
+        w.format("}\n");
+        w.format("_%sBufferIdx = -1;\n", ccName);
+    }
+
+    private String materializeMethod() {
+        return "_" + Util.camelCase("parse", ccName);
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.generator;
+
+import io.protostuff.parser.MessageField;
+
+import java.io.PrintWriter;
+
+/**
+ * Repeated message field declared with the <code>[lazy = true]</code> option.
+ *
+ * <p>The parsed items are stored first in the list, with their position in the parsed buffer. Each of them is parsed
+ * on first access and, until then, serialization copies its original bytes.
+ */
+public class LightProtoLazyRepeatedMessageField extends LightProtoRepeatedMessageField {
+
+    public LightProtoLazyRepeatedMessageField(MessageField field, int index) {
+        super(field, index, false);
+    }
+
+    @Override
+    public void declaration(PrintWriter w) {
+        super.declaration(w);
+        // Index and length of each of the first _xxxLazyCount items, the index is -1 once the item is parsed
+        w.format("private int[] _%sBufferRanges = null;\n", pluralName);
+        w.format("private int _%sLazyCount = 0;\n", pluralName);
+    }
+
+    @Override
+    public void getter(PrintWriter w) {
+        w.format("public int %s() {\n", Util.camelCase("get", pluralName, "count"));
+        w.format("    return _%sCount;\n", pluralName);
+        w.format("}\n");
+        w.format("public %s %s(int idx) {\n", field.getJavaType(), Util.camelCase("get", singularName, "at"));
+        w.format("    if (idx < 0 || idx >= _%sCount) {\n", pluralName);
+        w.format("        throw LightProtoCodec.indexOutOfBounds(idx, _%sCount, \"%s\");\n", pluralName, field.getName());
+        w.format("    }\n");
+        w.format("    if (idx < _%sLazyCount && _%sBufferRanges[idx << 1] != -1) {\n", pluralName, pluralName);
+        w.format("        %s(idx);\n", materializeMethod());
+        w.format("    }\n");
+        w.format("    return %s[idx];\n", pluralName);
+        w.format("}\n");
+
+        w.format("public java.util.List<%s> %s() {\n", field.getJavaType(), Util.camelCase("get", pluralName, "list"));
+        w.format("    if (_%sCount == 0) {\n", pluralName);
+        w.format("        return java.util.Collections.emptyList();\n");
+        w.format("    } else {\n");
+        w.format("        for (int i = 0; i < _%sLazyCount; i++) {\n", pluralName);
+        w.format("            if (_%sBufferRanges[i << 1] != -1) {\n", pluralName);
+        w.format("                %s(i);\n", materializeMethod());
+        w.format("            }\n");
+        w.format("        }\n");
+        w.format("        _%sLazyCount = 0;\n", pluralName);
+        w.format("        return java.util.Arrays.asList(%s).subList(0, _%sCount);\n", pluralName, pluralName);
+        w.format("    }\n");
+        w.format("}\n");
+
+        w.format("private void %s(int idx) {\n", materializeMethod());
+        w.format("    int _bufferIdx = _%sBufferRanges[idx << 1];\n", pluralName);
+        w.format("    int _bufferLen = _%sBufferRanges[(idx << 1) + 1];\n", pluralName);
+        w.format("    %s[idx].parseFrom(_parsedBuffer, _bufferIdx, _bufferLen);\n", pluralName);
+        w.format("    _%sBufferRanges[idx << 1] = -1;\n", pluralName);
+        // The re-serialized message is not guaranteed to have the same size as the original bytes
+        w.format("    _clearCachedSize();\n");
+        w.format("}\n");
+
+        forEach(w);
+    }
+
+    @Override
+    protected void forEach(PrintWriter w) {
+        w.format("public void %s(java.util.function.Consumer<? super %s> _consumer) {\n", Util.camelCase("forEach", singularName), field.getJavaType());
+        w.format("    for (int i = 0; i < _%sCount; i++) {\n", pluralName);
+        w.format("        _consumer.accept(%s(i));\n", Util.camelCase("get", singularName, "at"));
+        w.format("    }\n");
+        w.format("}\n");
+    }
+
+    @Override
+    public void parse(PrintWriter w) {
+        w.format("int _%sSize = LightProtoCodec.readVarInt(_buffer);\n", ccName);
+        addBufferRange(w, "_buffer.readerIndex()");
+        w.format("_buffer.skipBytes(_%sSize);\n", ccName);
+    }
+
+    @Override
+    public void parseAt(PrintWriter w) {
+        getLengthAt(w, "int _" + ccName + "Size", "_" + ccName + "Size");
+        addBufferRange(w, "_idx - _base");
+        w.format("_idx += _%sSize;\n", ccName);
+    }
+
+    private void addBufferRange(PrintWriter w, String bufferIdx) {
+        w.format("%s();\n", internalAdder());
+        w.format("if (_%sBufferRanges == null || _%sBufferRanges.length < _%sCount << 1) {\n", pluralName, pluralName, pluralName);
+        w.format("    _%sBufferRanges = LightProtoCodec.grow(_%sBufferRanges, _%sCount << 1);\n", pluralName, pluralName, pluralName);
+        w.format("}\n");
+        w.format("_%sBufferRanges[(_%sCount - 1) << 1] = %s;\n", pluralName, pluralName, bufferIdx);
+        w.format("_%sBufferRanges[((_%sCount - 1) << 1) + 1] = _%sSize;\n", pluralName, pluralName, ccName);
+        w.format("_%sLazyCount = _%sCount;\n", pluralName, pluralName);
+    }
+
+    @Override
+    public void serializedSize(PrintWriter w) {
+        String tmpName = Util.camelCase("_msgSize", field.getName());
+
+        w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
+        w.format("     int %s;\n", tmpName);
+        w.format("     if (i < _%sLazyCount && _%sBufferRanges[i << 1] != -1) {\n", pluralName, pluralName);
+        w.format("         %s = _%sBufferRanges[(i << 1) + 1];\n", tmpName, pluralName);
+        w.format("     } else {\n");
+        w.format("         %s = %s[i].getSerializedSize();\n", tmpName, pluralName);
+        w.format("     }\n");
+        w.format("     _size += %s_SIZE;\n", tagName());
+        w.format("     _size += LightProtoCodec.computeVarIntSize(%s) + %s;\n", tmpName, tmpName);
+        w.format("}\n");
+    }
+
+    @Override
+    public void serialize(PrintWriter w) {
+        w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
+        w.format("    if (i < _%sLazyCount && _%sBufferRanges[i << 1] != -1) {\n", pluralName, pluralName);
+        w.format("        int _bufferLen = _%sBufferRanges[(i << 1) + 1];\n", pluralName);
+        w.format("        _idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, _bufferLen);\n", tagName(), tagName());
+        w.format("        _b.setBytes(_idx, _parsedBuffer, _%sBufferRanges[i << 1], _bufferLen);\n", pluralName);
+        w.format("        _idx += _bufferLen;\n");
+        w.format("    } else {\n");
+        w.format("        %s _item = %s[i];\n", field.getJavaType(), pluralName);
+        w.format("        _idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, _item.getSerializedSize());\n", tagName(), tagName());
+        w.format("        _idx = _item._writeTo(_b, _idx);\n");
+        w.format("    }\n");
+        w.format("}\n");
+    }
+
+    @Override
+    public void clear(PrintWriter w) {
+        super.clear(w);
+        w.format("_%sLazyCount = 0;\n", pluralName);
+    }
+
+    private String materializeMethod() {
+        return "_" + Util.camelCase("parse", singularName, "at");
+    }
+}
@@ -15,30 +15,82 @@
  */
 package com.github.splunk.lightproto.generator;
 
+import io.protostuff.parser.Field;
 import io.protostuff.parser.Message;
+import io.protostuff.parser.MessageField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class LightProtoMessage {
 
+    private static final Logger log = LoggerFactory.getLogger(LightProtoMessage.class);
+
+    // HotSpot does not JIT compile methods over 8000 bytes of bytecode (HugeMethodLimit). The sizes are estimated
+    // from the generated source, so the limit is kept well below. The generator tests check the compiled sizes.
+    static final int METHOD_SIZE_LIMIT = 4000;
+
+    // Number of fields of the largest messages getting the parseFrom() overloads restricted to a set of fields
+    static final int MAX_FIELD_SET_SIZE = 64;
+
     private final Message message;
     private final boolean isNested;
     private final List<LightProtoEnum> enums;
     private final List<LightProtoField> fields;
     private final List<LightProtoMessage> nestedMessages;
+    private final boolean tableDriven;
+    private final boolean copyUnmodifiedFields;
+
+    // Estimated bytecode size of the generated methods handling all the fields
+    private final Map<String, Integer> methodSizes = new LinkedHashMap<>();
+    private final Set<String> generatedHelpers = new HashSet<>();
+    private final Map<LightProtoField, FieldCode> parseCodes = new LinkedHashMap<>();
+    private final Map<LightProtoField, FieldCode> packedParseCodes = new LinkedHashMap<>();
 
     public LightProtoMessage(Message message, boolean isNested) {
+        this(message, isNested, false, Collections.emptySet(), false);
+    }
+
+    /**
+     * @param tableDriven whether the message and its nested messages are parsed and serialized by the table-driven
+     *                    codec, instead of fully generated code
+     * @param unrolledMessages names of the messages always using generated code, for the most used ones
+     * @param copyUnmodifiedFields whether re-serializing a parsed message copies its unmodified fields from the parsed
+     *                             buffer, which must then be left unchanged for as long as the message is in use
+     */
+    public LightProtoMessage(Message message, boolean isNested, boolean tableDriven, Set<String> unrolledMessages,
+                             boolean copyUnmodifiedFields) {
         this.message = message;
         this.isNested = isNested;
+        this.tableDriven = tableDriven && !unrolledMessages.contains(message.getName());
+        this.copyUnmodifiedFields = copyUnmodifiedFields;
         this.enums = message.getNestedEnumGroups().stream().map(LightProtoEnum::new).collect(Collectors.toList());
-        this.nestedMessages = message.getNestedMessages().stream().map(m -> new LightProtoMessage(m, true)).collect(Collectors.toList());
+        this.nestedMessages = message.getNestedMessages().stream()
+                .map(m -> new LightProtoMessage(m, true, tableDriven, unrolledMessages, copyUnmodifiedFields))
+                .collect(Collectors.toList());
 
         this.fields = new ArrayList<>();
         for (int i = 0; i < message.getFields().size(); i++) {
-            fields.add(LightProtoField.create(message.getFields().get(i), i));
+            Field<?> field = message.getFields().get(i);
+            // The table-driven messages are parsed from a ByteBuf, also when their containing message has generated
+            // code walking the backing array
+            boolean tableDrivenType = tableDriven && field.isMessageField()
+                    && !unrolledMessages.contains(((MessageField) field).getMessage().getName());
+            fields.add(LightProtoField.create(field, i, tableDrivenType));
         }
     }
 
@@ -46,8 +98,18 @@ public class LightProtoMessage {
         return message.getName();
     }
 
+    /**
+     * Returns the estimated bytecode size of the largest methods generated for this message and its nested messages.
+     */
+    public Map<String, Integer> getMethodSizes() {
+        Map<String, Integer> sizes = new LinkedHashMap<>(methodSizes);
+        nestedMessages.forEach(nm -> nm.getMethodSizes().forEach((method, size) -> sizes.put(nm.getName() + "." + method, size)));
+        return sizes;
+    }
+
     public void generate(PrintWriter w) {
-        w.format("    public %s final class %s {\n", isNested ? "static" : "", message.getName());
+        w.format("    public %s final class %s implements LightProtoCodec.ParentMessage%s {\n", isNested ? "static" : "",
+                message.getName(), tableDriven ? ", LightProtoCodec.TableMessage" : "");
 
         enums.forEach(e -> e.generate(w));
         nestedMessages.forEach(nm -> nm.generate(w));
@@ -59,14 +121,26 @@ public class LightProtoMessage {
             field.getter(w);
             field.setter(w, message.getName());
             field.fieldClear(w, message.getName());
+            field.editor(w);
+            field.peek(w);
             w.println();
         });
 
         generateBitFields(w);
+        if (tableDriven) {
+            generateSchema(w);
+        }
         generateSerialize(w);
+        generateDelimited(w);
         generateGetSerializedSize(w);
+        generateClearCachedSize(w);
+        generateModifiedFields(w);
         generateParseFrom(w);
+        generateAbsoluteParseFrom(w);
+        generateProjectedParseFrom(w);
+        generateIncrementalParseFrom(w);
         generateCheckRequiredFields(w);
+        generateUnknownFields(w);
         generateClear(w);
         generateCopyFrom(w);
 
@@ -82,58 +156,800 @@ public class LightProtoMessage {
         w.println("            this.parseFrom(b, b.readableBytes());");
         w.println("        }");
 
-        w.println("        private int _cachedSize;\n");
+        w.println("        private int _cachedSize = -1;\n");
+        w.println("        private LightProtoCodec.ParentMessage _parent;\n");
+        w.println("        private int _parentField;\n");
         w.println("        private io.netty.buffer.ByteBuf _parsedBuffer;\n");
+        generateView(w);
         w.println("    }");
         w.println();
     }
 
     private void generateParseFrom(PrintWriter w) {
+        if (tableDriven) {
+            // All the buffers are parsed with the absolute getters
+            generateParseFromDocs(w);
+            w.format("        public void parseFrom(io.netty.buffer.ByteBuf _buffer, int _size) {\n");
+            w.format("            int _offset = _buffer.readerIndex();\n");
+            w.format("            parseFrom(_buffer, _offset, _size);\n");
+            w.format("            _buffer.readerIndex(_offset + _size);\n");
+            w.format("        }\n");
+            return;
+        }
+        generateParseFromDocs(w);
+        generateSplittable(w, "parseFrom(ByteBuf, int)", parseCodes(), this::generateParseFromMethod);
+    }
+
+    private void generateParseFromDocs(PrintWriter w) {
+        w.format("        /**\n");
+        w.format("         * The buffer must not be modified nor released while the message is in use, since the string, bytes and lazy\n");
+        w.format("         * fields are decoded from it on access, and the unknown fields are copied from it when serializing.\n");
+        if (copyUnmodifiedFields) {
+            w.format("         * So are the fields left unmodified since parsing, even in a message with only number fields.\n");
+        }
+        w.format("         */\n");
+    }
+
+    private void generateParseFromMethod(PrintWriter w) {
         w.format("        public void parseFrom(io.netty.buffer.ByteBuf _buffer, int _size) {\n");
+        // Heap and direct buffers are parsed with a local cursor, and only composite buffers go through the reader
+        // index
+        w.format("            if (_buffer.hasArray() || _buffer.hasMemoryAddress()) {\n");
+        w.format("                int _offset = _buffer.readerIndex();\n");
+        w.format("                parseFrom(_buffer, _offset, _size);\n");
+        w.format("                _buffer.readerIndex(_offset + _size);\n");
+        w.format("                return;\n");
+        w.format("            }\n");
         w.format("            clear();\n");
         w.format("            int _endIdx = _buffer.readerIndex() + _size;\n");
         w.format("            while (_buffer.readerIndex() < _endIdx) {\n");
+        w.format("                int _tagIdx = _buffer.readerIndex();\n");
         w.format("                int _tag = LightProtoCodec.readVarInt(_buffer);\n");
-        w.format("                switch (_tag) {\n");
+        generateParseSwitch(w, "_endIdx", false);
+        w.format("            }\n");
+        if (hasRequiredFields()) {
+            w.format("            checkRequiredFields();\n");
+        }
+        w.format("            _parsedBuffer = _buffer;\n");
+        generateParsedRange(w, "_endIdx - _size", "_size");
+        w.format("        }\n");
+    }
 
-        for (LightProtoField field : fields) {
-            w.format("                case %s:\n", field.tagName());
-            if (!field.isRepeated() && !field.isEnum()) {
-                w.format("                    _bitField%d |= %s;\n", field.bitFieldIndex(), field.fieldMask());
+    private void generateAbsoluteParseFrom(PrintWriter w) {
+        // Same as parseFrom(), with a local cursor instead of the reader index, so that the buffer is never modified
+        // and can be shared by concurrent parsers
+        generateParseFromDocs(w);
+        w.format("        public void parseFrom(io.netty.buffer.ByteBuf _buffer, int _offset, int _length) {\n");
+        w.format("            if (_offset < 0 || _length < 0 || _offset + _length > _buffer.writerIndex()) {\n");
+        w.format("                throw new IndexOutOfBoundsException(\"Invalid message range: \" + _offset + \", \" + _length);\n");
+        w.format("            }\n");
+        if (tableDriven) {
+            w.format("            _parseFrom(_buffer, _buffer, 0, _offset, _length);\n");
+            w.format("        }\n");
+            generateTableParseFrom(w);
+            return;
+        }
+        w.format("            if (_buffer.hasArray()) {\n");
+        w.format("                _parseFrom(_buffer, _buffer.array(), _buffer.arrayOffset(), _offset, _length);\n");
+        w.format("            } else {\n");
+        w.format("                _parseFrom(_buffer, _buffer, 0, _offset, _length);\n");
+        w.format("            }\n");
+        w.format("        }\n");
+
+        // The same parsing code is generated for heap buffers, walking directly the backing array, and for the other
+        // buffers, going through the ByteBuf absolute getters. The cursor is shifted by _base from the buffer indexes.
+        generateAbsoluteParseFrom(w, "byte[]");
+        generateAbsoluteParseFrom(w, "io.netty.buffer.ByteBuf");
+
+        // The tag expected by each case, and last, 0 for the end of the message
+        List<ParseCase> cases = parseCases();
+        w.format("        private static final int[] _PARSE_TAGS = new int[] {");
+        cases.forEach(c -> w.format("%s, ", c.tag));
+        w.format("0};\n");
+        w.format("        private static int _parseCaseOf(int _tag) {\n");
+        w.format("            switch (_tag) {\n");
+        for (int i = 0; i < cases.size(); i++) {
+            w.format("            case %s:\n", cases.get(i).tag);
+            w.format("                return %d;\n", i);
+        }
+        w.format("            default:\n");
+        w.format("                return -1;\n");
+        w.format("            }\n");
+        w.format("        }\n");
+    }
+
+    /**
+     * A case of the absolute parse methods, parsing the occurrences of a field with the given tag, either packed or
+     * not, and expecting the tag of the case at <code>next</code> afterwards, or the end of the message.
+     */
+    private static final class ParseCase {
+        private final LightProtoField field;
+        private final boolean packed;
+        private final String tag;
+        private int next;
+
+        ParseCase(LightProtoField field, boolean packed) {
+            this.field = field;
+            this.packed = packed;
+            this.tag = field.tagName() + (packed ? "_PACKED" : "");
+        }
+    }
+
+    /**
+     * Returns the cases of the absolute parse methods, by field number, each field starting with the tag written by
+     * the encoders: packed or not, as declared. The case expected after a field is the same case for an unpacked
+     * repeated field, which usually occurs several times in a row, and the first case of the next field otherwise,
+     * past the last case for the last field.
+     */
+    private List<ParseCase> parseCases() {
+        List<LightProtoField> byNumber = new ArrayList<>(fields);
+        byNumber.sort(Comparator.comparingInt(f -> f.field.getNumber()));
+        List<ParseCase> cases = new ArrayList<>();
+        Map<LightProtoField, Integer> firstCases = new HashMap<>();
+        for (LightProtoField field : byNumber) {
+            firstCases.put(field, cases.size());
+            cases.add(new ParseCase(field, field.isPacked()));
+            if (field.isPackable()) {
+                cases.add(new ParseCase(field, !field.isPacked()));
+            }
+        }
+        for (int i = 0; i < cases.size(); i++) {
+            ParseCase c = cases.get(i);
+            int nextField = byNumber.indexOf(c.field) + 1;
+            if (c.field.isRepeated() && !c.packed) {
+                c.next = i;
+            } else {
+                c.next = nextField < byNumber.size() ? firstCases.get(byNumber.get(nextField)) : cases.size();
             }
-            field.parse(w);
-            w.format("                    break;\n");
         }
+        return cases;
+    }
 
+    private void generateAbsoluteParseFrom(PrintWriter w, String bufferType) {
+        Map<LightProtoField, FieldCode> codes = new LinkedHashMap<>();
+        Map<LightProtoField, FieldCode> packedCodes = new LinkedHashMap<>();
+        String parameters = String.format("(io.netty.buffer.ByteBuf _source, %s _buffer, int _base, int _idx, int _endIdx)", bufferType);
         for (LightProtoField field : fields) {
+            String name = "_" + Util.camelCase("parse", field.ccName, "field", "at");
+            codes.put(field, new FieldCode(fw -> {
+                generateSetBitField(fw, field);
+                field.parseAt(fw);
+            }, "private int " + name + parameters, "_idx", "_idx = " + name + "(_source, _buffer, _base, _idx, _endIdx);"));
             if (field.isPackable()) {
-                w.format("                case %s_PACKED:\n", field.tagName());
-                field.parsePacked(w);
-                w.format("                    break;\n");
+                String packedName = "_" + Util.camelCase("parse", field.ccName, "packed", "field", "at");
+                packedCodes.put(field, new FieldCode(field::parsePackedAt, "private int " + packedName + parameters, "_idx",
+                        "_idx = " + packedName + "(_source, _buffer, _base, _idx, _endIdx);"));
             }
         }
+        List<FieldCode> allCodes = new ArrayList<>(codes.values());
+        allCodes.addAll(packedCodes.values());
+        generateSplittable(w, "_parseFrom(" + bufferType.replace("io.netty.buffer.", "") + ")", allCodes,
+                mw -> generateAbsoluteParseFromMethod(mw, bufferType, codes, packedCodes));
+    }
 
+    private void generateAbsoluteParseFromMethod(PrintWriter w, String bufferType, Map<LightProtoField, FieldCode> codes,
+                                                 Map<LightProtoField, FieldCode> packedCodes) {
+        w.format("        void _parseFrom(io.netty.buffer.ByteBuf _source, %s _buffer, int _base, int _offset, int _length) {\n", bufferType);
+        w.format("            clear();\n");
+        w.format("            int _idx = _base + _offset;\n");
+        w.format("            int _endIdx = _idx + _length;\n");
+        // Encoders almost always write the fields by increasing field number. Each case expects the tag of the next
+        // field in that order, whose case is then taken without looking up the tag.
+        List<ParseCase> cases = parseCases();
+        w.format("            // Every field is predicted, in field number order\n");
+        w.format("            int _nextCase = 0;\n");
+        w.format("            while (_idx < _endIdx) {\n");
+        w.format("                int _tagIdx = _idx;\n");
+        w.format("                long _tagAndIdx = LightProtoCodec.getVarIntAndIdx(_buffer, _idx);\n");
+        w.format("                int _tag = (int) _tagAndIdx;\n");
+        w.format("                _idx = (int) (_tagAndIdx >>> 32);\n");
+        w.format("                switch (_tag == _PARSE_TAGS[_nextCase] ? _nextCase : _parseCaseOf(_tag)) {\n");
+        for (int i = 0; i < cases.size(); i++) {
+            ParseCase c = cases.get(i);
+            w.format("                case %d:\n", i);
+            (c.packed ? packedCodes : codes).get(c.field).generate(w);
+            w.format("                    _nextCase = %d;\n", c.next);
+            w.format("                    break;\n");
+        }
         w.format("                default:\n");
-        w.format("                    LightProtoCodec.skipUnknownField(_tag, _buffer);\n");
+        w.format("                    _idx = LightProtoCodec.skipUnknownField(_tag, _buffer, _idx, _endIdx);\n");
+        w.format("                    _addUnknownField(_tagIdx - _base, _idx - _tagIdx);\n");
         w.format("                }\n");
         w.format("            }\n");
+        // The last field is overflowing the message
+        w.format("            if (_idx > _endIdx) {\n");
+        w.format("                throw new IllegalArgumentException(\"Malformed message\");\n");
+        w.format("            }\n");
         if (hasRequiredFields()) {
             w.format("            checkRequiredFields();\n");
         }
+        w.format("            _parsedBuffer = _source;\n");
+        generateParsedRange(w, "_offset", "_length");
+        w.format("        }\n");
+    }
+
+    private void generateParsedRange(PrintWriter w, String idx, String len) {
+        if (!copyUnmodifiedFields) {
+            return;
+        }
+        w.format("            _parsedIdx = %s;\n", idx);
+        w.format("            _parsedLen = %s;\n", len);
+        for (int i = 0; i < bitFieldsCount(); i++) {
+            w.format("            _modifiedFields%d = 0;\n", i);
+        }
+    }
+
+    private void generateTableParseFrom(PrintWriter w) {
+        // There is no overload over a backing array, which the codec does not walk. The containing messages with
+        // generated code call this one with their source buffer.
+        w.format("        void _parseFrom(io.netty.buffer.ByteBuf _source, io.netty.buffer.ByteBuf _buffer, int _base, int _offset, int _length) {\n");
+        w.format("            clear();\n");
+        w.format("            LightProtoCodec.parseFields(this, _SCHEMA, _source, _offset, _offset + _length);\n");
+        if (hasRequiredFields()) {
+            w.format("            checkRequiredFields();\n");
+        }
+        w.format("            _parsedBuffer = _source;\n");
+        generateParsedRange(w, "_offset", "_length");
+        w.format("        }\n");
+    }
+
+    /**
+     * Generates the schema table of a table-driven message, and the accessors of its fields by storage slot, which is
+     * the field index. The number fields are parsed and serialized by the codec, and the other ones by their
+     * generated code.
+     */
+    private void generateSchema(PrintWriter w) {
+        List<LightProtoField> byNumber = new ArrayList<>(fields);
+        byNumber.sort(Comparator.comparingInt(f -> f.field.getNumber()));
+        w.format("        private static final int[] _SCHEMA = new int[] {\n");
+        for (LightProtoField field : byNumber) {
+            w.format("            %s, %d, %s,\n", field.tagName(), field.index(), field.tableKind());
+        }
+        w.format("        };\n");
+        w.println();
+
+        List<LightProtoField> numbers = fields.stream().filter(LightProtoField::isNumber).collect(Collectors.toList());
+        List<LightProtoField> others = fields.stream().filter(f -> !f.isNumber()).collect(Collectors.toList());
+
+        w.format("        public boolean _setField(int _slot, long _value) {\n");
+        w.format("            switch (_slot) {\n");
+        for (LightProtoField field : numbers) {
+            w.format("            case %d:\n", field.index());
+            field.tableSetter(w);
+            w.format("                break;\n");
+        }
+        w.format("            }\n");
+        w.format("            return true;\n");
+        w.format("        }\n");
+        w.println();
+
+        w.format("        public long _getField(int _slot, int _index) {\n");
+        w.format("            switch (_slot) {\n");
+        for (LightProtoField field : numbers) {
+            w.format("            case %d:\n", field.index());
+            field.tableGetter(w);
+        }
+        w.format("            default:\n");
+        w.format("                throw new IllegalArgumentException(\"Invalid number field slot: \" + _slot);\n");
+        w.format("            }\n");
+        w.format("        }\n");
+        w.println();
+
+        w.format("        public int _getFieldCount(int _slot) {\n");
+        w.format("            switch (_slot) {\n");
+        for (LightProtoField field : numbers) {
+            w.format("            case %d:\n", field.index());
+            field.tableCount(w);
+        }
+        w.format("            default:\n");
+        w.format("                throw new IllegalArgumentException(\"Invalid number field slot: \" + _slot);\n");
+        w.format("            }\n");
+        w.format("        }\n");
+        w.println();
+
+        // Same code as the generated parsers, with the cursor on the buffer itself
+        w.format("        public int _parseField(int _slot, io.netty.buffer.ByteBuf _buffer, int _idx, int _endIdx) {\n");
+        w.format("            io.netty.buffer.ByteBuf _source = _buffer;\n");
+        w.format("            int _base = 0;\n");
+        w.format("            switch (_slot) {\n");
+        for (LightProtoField field : others) {
+            w.format("            case %d:\n", field.index());
+            generateSetBitField(w, field);
+            field.parseAt(w);
+            w.format("                break;\n");
+        }
+        w.format("            }\n");
+        w.format("            return _idx;\n");
+        w.format("        }\n");
+        w.println();
+
+        w.format("        public int _getFieldSize(int _slot) {\n");
+        w.format("            int _size = 0;\n");
+        w.format("            switch (_slot) {\n");
+        for (LightProtoField field : others) {
+            w.format("            case %d:\n", field.index());
+            if (field.isRepeated()) {
+                field.serializedSize(w);
+            } else {
+                w.format("                if (%s()) {\n", Util.camelCase("has", field.field.getName()));
+                field.serializedSize(w);
+                w.format("                }\n");
+            }
+            w.format("                break;\n");
+        }
+        w.format("            }\n");
+        w.format("            return _size;\n");
+        w.format("        }\n");
+        w.println();
+
+        w.format("        public int _writeField(int _slot, io.netty.buffer.ByteBuf _b, int _idx) {\n");
+        w.format("            switch (_slot) {\n");
+        for (LightProtoField field : others) {
+            w.format("            case %d:\n", field.index());
+            if (field.isRepeated()) {
+                field.serialize(w);
+            } else {
+                w.format("                if (%s()) {\n", Util.camelCase("has", field.field.getName()));
+                field.serialize(w);
+                w.format("                }\n");
+            }
+            w.format("                break;\n");
+        }
+        w.format("            }\n");
+        w.format("            return _idx;\n");
+        w.format("        }\n");
+        w.println();
+    }
+
+    private void generateProjectedParseFrom(PrintWriter w) {
+        if (fields.size() > MAX_FIELD_SET_SIZE) {
+            // The set of fields is a long bitmask, indexed like the bit fields
+            log.warn("LightProto message {} has more than {} fields, it gets no parseFrom() restricted to a set of fields",
+                    message.getName(), MAX_FIELD_SET_SIZE);
+            return;
+        }
+
+        for (LightProtoField field : fields) {
+            w.format("        public static final long %s = 1L << %d;\n", field.fieldSetConstant(), field.index());
+        }
+        w.format("        public static final long ALL_FIELDS = 0L");
+        fields.forEach(field -> w.format(" | %s", field.fieldSetConstant()));
+        w.format(";\n");
+        w.format("        private static final long _REPEATED_FIELDS = 0L");
+        fields.stream().filter(LightProtoField::isRepeated).forEach(field -> w.format(" | %s", field.fieldSetConstant()));
+        w.format(";\n");
+        if (!tableDriven) {
+            w.format("        private static long _fieldOf(int _tag) {\n");
+            w.format("            switch (_tag) {\n");
+            for (LightProtoField field : fields) {
+                w.format("            case %s:\n", field.tagName());
+                if (field.isPackable()) {
+                    w.format("            case %s_PACKED:\n", field.tagName());
+                }
+                w.format("                return %s;\n", field.fieldSetConstant());
+            }
+            w.format("            default:\n");
+            w.format("                return 0L;\n");
+            w.format("            }\n");
+            w.format("        }\n");
+        }
+
+        w.format("        public void parseFrom(io.netty.buffer.ByteBuf _buffer, int _size, long _fields) {\n");
+        w.format("            parseFrom(_buffer, _size, _fields, 0L, null, false);\n");
+        w.format("        }\n");
+        w.format("\n");
+        w.format("        public boolean parseFrom(io.netty.buffer.ByteBuf _buffer, int _size, long _fields, long _filterFields, java.util.function.Predicate<%s> _filter) {\n", message.getName());
+        w.format("            return parseFrom(_buffer, _size, _fields, _filterFields, _filter, false);\n");
+        w.format("        }\n");
+        w.format("\n");
+
+        w.format("        /**\n");
+        w.format("         * Parses the given fields, along with the filter fields, and skips the other ones. The filter, if any, is\n");
+        w.format("         * evaluated once, with all the filter fields parsed, and parsing is aborted when it rejects the message.\n");
+        w.format("         * <p>\n");
+        w.format("         * By the last-wins rule of protobuf, the whole message is read, unless <code>_fieldsOnce</code> tells that\n");
+        w.format("         * each singular field occurs at most once, as written by the encoders. Parsing then stops as soon as all the\n");
+        w.format("         * requested fields were seen, and the filter is evaluated as soon as all its fields were seen, unless they\n");
+        w.format("         * are repeated.\n");
+        w.format("         *\n");
+        w.format("         * @return false if the filter rejected the message\n");
+        w.format("         */\n");
+        generateSplittable(w, "parseFrom(ByteBuf, int, long, long, Predicate, boolean)", parseCodes(),
+                this::generateProjectedParseFromMethod);
+    }
+
+    private void generateProjectedParseFromMethod(PrintWriter w) {
+        w.format("        public boolean parseFrom(io.netty.buffer.ByteBuf _buffer, int _size, long _fields, long _filterFields, java.util.function.Predicate<%s> _filter, boolean _fieldsOnce) {\n", message.getName());
+        w.format("            clear();\n");
+        w.format("            _fields |= _filterFields;\n");
+        w.format("            int _endIdx = _buffer.readerIndex() + _size;\n");
+        // Stop as soon as all the requested fields were seen, unless they can occur again
+        w.format("            long _pending = !_fieldsOnce || (_fields & _REPEATED_FIELDS) != 0 ? -1L : (_fields & ALL_FIELDS);\n");
+        // Same for the filter fields, the filter is otherwise evaluated at the end
+        w.format("            long _filterPending = !_fieldsOnce || (_filterFields & _REPEATED_FIELDS) != 0 ? -1L : (_filterFields & ALL_FIELDS);\n");
+        if (tableDriven) {
+            w.format("            int _entry = LightProtoCodec.NO_FIELD;\n");
+        }
+        w.format("            while (_pending != 0 && _buffer.readerIndex() < _endIdx) {\n");
+        w.format("                int _tagIdx = _buffer.readerIndex();\n");
+        w.format("                int _tag = LightProtoCodec.readVarInt(_buffer);\n");
+        generateParseSwitch(w, "_endIdx", true);
+        w.format("            }\n");
+        w.format("            _buffer.readerIndex(_endIdx);\n");
+        w.format("            if (_filter != null && !_filter.test(this)) {\n");
+        w.format("                return false;\n");
+        w.format("            }\n");
+        if (hasRequiredFields()) {
+            // Only the requested required fields are checked
+            for (int i = 0; i < bitFieldsCount(); i++) {
+                w.format("            int _required%d = (int) (_fields >>> %d) & _REQUIRED_FIELDS_MASK%d;\n", i, i * 32, i);
+            }
+            w.format("            if (");
+            for (int i = 0; i < bitFieldsCount(); i++) {
+                if (i != 0) {
+                    w.print("\n             || ");
+                }
+                w.format("(_bitField%d & _required%d) != _required%d", i, i, i);
+            }
+            w.format(") {\n");
+            w.format("                throw new IllegalStateException(\"Some required fields are missing\");\n");
+            w.format("            }\n");
+        }
+        w.format("            _parsedBuffer = _buffer;\n");
+        w.format("            return true;\n");
+        w.format("        }\n");
+    }
+
+    private void generateIncrementalParseFrom(PrintWriter w) {
+        w.format("        public static final int PARSE_DONE = 0;\n");
+        w.format("        public static final int PARSE_NEED_MORE = 1;\n");
+        w.format("        public static final int PARSE_ERROR = -1;\n");
+        w.format("        private int _parseEndIdx = -1;\n");
+        w.format("\n");
+
+        w.format("        /**\n");
+        w.format("         * Parses the message as its bytes are appended to the buffer, consuming the fields whose bytes are all\n");
+        w.format("         * readable. Like with parseFrom(), the parsed fields keep referring to the buffer, which must cumulate all\n");
+        w.format("         * the bytes of the message: the fragments can be added without copy as the components of a\n");
+        w.format("         * CompositeByteBuf, but its read components must not be discarded.\n");
+        w.format("         * <p>\n");
+        w.format("         * No state is kept within a field: its bytes are left in the buffer until they all arrived, so that a large\n");
+        w.format("         * nested message or bytes field is only consumed by the call that completes it.\n");
+        w.format("         *\n");
+        w.format("         * @return PARSE_DONE once the message is parsed, PARSE_NEED_MORE while bytes are missing, PARSE_ERROR if the\n");
+        w.format("         *         message is malformed or misses required fields\n");
+        w.format("         */\n");
+        generateSplittable(w, "parseIncrementally(ByteBuf, int)", parseCodes(), this::generateIncrementalParseFromMethod);
+    }
+
+    private void generateIncrementalParseFromMethod(PrintWriter w) {
+        // Each field is only parsed once all its bytes are readable. The bytes of an incomplete field are left in the
+        // buffer, and its tag and length are read again on the next call.
+        w.format("        public int parseIncrementally(io.netty.buffer.ByteBuf _buffer, int _size) {\n");
+        w.format("            if (_parseEndIdx == -1) {\n");
+        w.format("                clear();\n");
+        w.format("                _parseEndIdx = _buffer.readerIndex() + _size;\n");
+        w.format("            }\n");
         w.format("            _parsedBuffer = _buffer;\n");
+        if (tableDriven) {
+            w.format("            int _entry = LightProtoCodec.NO_FIELD;\n");
+        }
+        w.format("            try {\n");
+        w.format("            while (_buffer.readerIndex() < _parseEndIdx) {\n");
+        w.format("                int _tagIdx = _buffer.readerIndex();\n");
+        w.format("                int _fieldEnd = LightProtoCodec.findFieldEnd(_buffer, _tagIdx, _parseEndIdx);\n");
+        w.format("                if (_fieldEnd == LightProtoCodec.FIELD_INCOMPLETE) {\n");
+        w.format("                    return PARSE_NEED_MORE;\n");
+        w.format("                } else if (_fieldEnd == LightProtoCodec.FIELD_MALFORMED) {\n");
+        w.format("                    _parseEndIdx = -1;\n");
+        w.format("                    return PARSE_ERROR;\n");
+        w.format("                }\n");
+        w.format("                int _tag = LightProtoCodec.readVarInt(_buffer);\n");
+        generateParseSwitch(w, "_parseEndIdx", false);
+        w.format("            }\n");
+        w.format("            } catch (IndexOutOfBoundsException | IllegalArgumentException | IllegalStateException _e) {\n");
+        // Malformed nested messages
+        w.format("                _parseEndIdx = -1;\n");
+        w.format("                return PARSE_ERROR;\n");
+        w.format("            }\n");
+        w.format("            _parseEndIdx = -1;\n");
+        if (hasRequiredFields()) {
+            w.format("            if (%s) {\n", requiredFieldsMissing());
+            w.format("                return PARSE_ERROR;\n");
+            w.format("            }\n");
+        }
+        w.format("            return PARSE_DONE;\n");
         w.format("        }\n");
     }
 
+    /**
+     * Generates the parsing of the field whose tag was just read at the reader index, in a message ending at the
+     * given end index.
+     */
+    private void generateParseSwitch(PrintWriter w, String endIdx, boolean projected) {
+        if (!tableDriven) {
+            if (projected) {
+                // The requested fields are checked before the switch, so that its cases stay as small as in the
+                // other parse methods
+                w.format("                long _field = _fieldOf(_tag);\n");
+                w.format("                if (_field != 0 && (_fields & _field) == 0) {\n");
+                w.format("                    LightProtoCodec.skipUnknownField(_tag, _buffer);\n");
+                w.format("                    continue;\n");
+                w.format("                }\n");
+            }
+            w.format("                switch (_tag) {\n");
+            generateParseCases(w);
+            w.format("                default:\n");
+            w.format("                    LightProtoCodec.skipUnknownField(_tag, _buffer);\n");
+            w.format("                    _addUnknownField(_tagIdx, _buffer.readerIndex() - _tagIdx);\n");
+            w.format("                }\n");
+            if (projected) {
+                generateProjectedFieldSeen(w);
+            }
+            return;
+        }
+
+        w.format("                int _found = LightProtoCodec.findField(_SCHEMA, _tag, _entry);\n");
+        w.format("                if (_found < 0) {\n");
+        w.format("                    LightProtoCodec.skipUnknownField(_tag, _buffer);\n");
+        w.format("                    _addUnknownField(_tagIdx, _buffer.readerIndex() - _tagIdx);\n");
+        w.format("                    continue;\n");
+        w.format("                }\n");
+        w.format("                _entry = _found;\n");
+        if (projected) {
+            // The storage slot of each field is its index
+            w.format("                long _field = 1L << _SCHEMA[_entry + 1];\n");
+            w.format("                if ((_fields & _field) == 0) {\n");
+            w.format("                    LightProtoCodec.skipUnknownField(_tag, _buffer);\n");
+            w.format("                    continue;\n");
+            w.format("                }\n");
+        }
+        w.format("                _buffer.readerIndex(LightProtoCodec.parseField(this, _SCHEMA, _entry, _tag, _buffer, _buffer.readerIndex(), %s));\n", endIdx);
+        if (projected) {
+            generateProjectedFieldSeen(w);
+        }
+    }
+
+    /**
+     * Generates the code of the projected parse following a requested field. The filter is evaluated once all its
+     * fields were seen, if they can't occur again, so that it sees all of them and their last value.
+     */
+    private void generateProjectedFieldSeen(PrintWriter w) {
+        w.format("                _pending &= ~_field;\n");
+        w.format("                if ((_filterFields & _field) != 0 && _filter != null) {\n");
+        w.format("                    _filterPending &= ~_field;\n");
+        w.format("                    if (_filterPending == 0) {\n");
+        w.format("                        if (!_filter.test(this)) {\n");
+        w.format("                            _buffer.readerIndex(_endIdx);\n");
+        w.format("                            return false;\n");
+        w.format("                        }\n");
+        w.format("                        _filter = null;\n");
+        w.format("                    }\n");
+        w.format("                }\n");
+    }
+
+    private void generateParseCases(PrintWriter w) {
+        for (LightProtoField field : fields) {
+            w.format("                case %s:\n", field.tagName());
+            parseCodes.get(field).generate(w);
+            w.format("                    break;\n");
+        }
+
+        for (LightProtoField field : fields) {
+            if (field.isPackable()) {
+                w.format("                case %s_PACKED:\n", field.tagName());
+                packedParseCodes.get(field).generate(w);
+                w.format("                    break;\n");
+            }
+        }
+    }
+
+    /**
+     * Returns the code parsing each field at the buffer reader index, shared by the parse methods not using a local
+     * cursor.
+     */
+    private List<FieldCode> parseCodes() {
+        if (parseCodes.isEmpty()) {
+            for (LightProtoField field : fields) {
+                String name = "_" + Util.camelCase("parse", field.ccName, "field");
+                parseCodes.put(field, new FieldCode(fw -> {
+                    generateSetBitField(fw, field);
+                    field.parse(fw);
+                }, "private void " + name + "(io.netty.buffer.ByteBuf _buffer)", null, name + "(_buffer);"));
+                if (field.isPackable()) {
+                    String packedName = "_" + Util.camelCase("parse", field.ccName, "packed", "field");
+                    packedParseCodes.put(field, new FieldCode(field::parsePacked,
+                            "private void " + packedName + "(io.netty.buffer.ByteBuf _buffer)", null, packedName + "(_buffer);"));
+                }
+            }
+        }
+        List<FieldCode> codes = new ArrayList<>(parseCodes.values());
+        codes.addAll(packedParseCodes.values());
+        return codes;
+    }
+
+    private void generateSetBitField(PrintWriter w, LightProtoField field) {
+        if (!field.isRepeated() && !field.isEnum()) {
+            w.format("                    _bitField%d |= %s;\n", field.bitFieldIndex(), field.fieldMask());
+        }
+    }
+
+    private void generateUnknownFields(PrintWriter w) {
+        // Index and length in the parsed buffer of each unknown field, including its tag. They are written back
+        // verbatim after the known fields.
+        w.format("        private int[] _unknownFieldRanges = null;\n");
+        w.format("        private int _unknownFieldRangesCount = 0;\n");
+        w.format("\n");
+        w.format("        %s void _addUnknownField(int _idx, int _len) {\n", tableDriven ? "public" : "private");
+        w.format("            if (_unknownFieldRanges == null || _unknownFieldRanges.length == _unknownFieldRangesCount) {\n");
+        w.format("                _unknownFieldRanges = LightProtoCodec.grow(_unknownFieldRanges, _unknownFieldRangesCount + 2);\n");
+        w.format("            }\n");
+        w.format("            _unknownFieldRanges[_unknownFieldRangesCount++] = _idx;\n");
+        w.format("            _unknownFieldRanges[_unknownFieldRangesCount++] = _len;\n");
+        w.format("        }\n");
+        w.format("\n");
+        w.format("        public boolean hasUnknownFields() {\n");
+        w.format("            return _unknownFieldRangesCount > 0;\n");
+        w.format("        }\n");
+        w.format("\n");
+        w.format("        public %s clearUnknownFields() {\n", message.getName());
+        w.format("            _unknownFieldRangesCount = 0;\n");
+        if (copyUnmodifiedFields) {
+            w.format("            _parsedLen = -1;\n");
+        }
+        w.format("            _clearCachedSize();\n");
+        w.format("            return this;\n");
+        w.format("        }\n");
+    }
+
+    /**
+     * Generates the read-only flyweight view of the message. The view is positioned on a serialized message and, on
+     * first access, records the index of the last occurrence of each singular field, and of each item of the repeated
+     * fields, so that the getters can decode the values directly from the buffer.
+     */
+    private void generateView(PrintWriter w) {
+        String viewName = message.getName() + "View";
+        boolean hasRepeated = fields.stream().anyMatch(LightProtoField::isRepeated);
+        w.format("        public static final class %s {\n", viewName);
+        w.format("            private io.netty.buffer.ByteBuf _buffer;\n");
+        w.format("            private int _offset;\n");
+        w.format("            private int _length;\n");
+        w.format("            private boolean _scanned;\n");
+        w.format("            private final int[] _fieldIdxs = new int[%d];\n", fields.size());
+        if (hasRepeated) {
+            // The item indexes of the repeated fields are kept across wrap() calls, to be reused without allocations
+            w.format("            private final int[][] _itemIdxs = new int[%d][];\n", fields.size());
+            w.format("            private final int[] _itemsCounts = new int[%d];\n", fields.size());
+        }
+        w.println();
+        w.format("            public %s wrap(io.netty.buffer.ByteBuf _buffer, int _offset, int _length) {\n", viewName);
+        w.format("                this._buffer = _buffer;\n");
+        w.format("                this._offset = _offset;\n");
+        w.format("                this._length = _length;\n");
+        w.format("                this._scanned = false;\n");
+        w.format("                return this;\n");
+        w.format("            }\n");
+        w.println();
+        w.format("            public %s wrap(io.netty.buffer.ByteBuf _buffer) {\n", viewName);
+        w.format("                return wrap(_buffer, _buffer.readerIndex(), _buffer.readableBytes());\n");
+        w.format("            }\n");
+        w.println();
+        w.format("            private int _fieldIdx(int _index) {\n");
+        w.format("                if (!_scanned) {\n");
+        w.format("                    _scan();\n");
+        w.format("                }\n");
+        w.format("                return _fieldIdxs[_index];\n");
+        w.format("            }\n");
+        w.println();
+        if (hasRepeated) {
+            w.format("            private int _itemsCount(int _index) {\n");
+            w.format("                if (!_scanned) {\n");
+            w.format("                    _scan();\n");
+            w.format("                }\n");
+            w.format("                return _itemsCounts[_index];\n");
+            w.format("            }\n");
+            w.println();
+            w.format("            private void _addItemIdx(int _index, int _itemIdx) {\n");
+            w.format("                int _count = _itemsCounts[_index];\n");
+            w.format("                if (_itemIdxs[_index] == null || _itemIdxs[_index].length == _count) {\n");
+            w.format("                    _itemIdxs[_index] = LightProtoCodec.grow(_itemIdxs[_index], _count + 1);\n");
+            w.format("                }\n");
+            w.format("                _itemIdxs[_index][_count] = _itemIdx;\n");
+            w.format("                _itemsCounts[_index] = _count + 1;\n");
+            w.format("            }\n");
+            w.println();
+        }
+        if (fields.stream().anyMatch(f -> f.isPackable() && !f.isEnum())) {
+            // The items of the number fields, packed or not, are recorded by a shared method, keeping the scan small
+            w.format("            private void _addNumberItemIdxs(int _index, int _tag, int _idx, int _endIdx, int _itemSize) {\n");
+            w.format("                int _itemIdx = LightProtoCodec.skipVarInt(_buffer, _idx);\n");
+            w.format("                if ((_tag & LightProtoCodec.TAG_TYPE_MASK) != LightProtoCodec.WIRETYPE_LENGTH_DELIMITED) {\n");
+            w.format("                    _addItemIdx(_index, _itemIdx);\n");
+            w.format("                    return;\n");
+            w.format("                }\n");
+            w.format("                _itemIdx = LightProtoCodec.skipVarInt(_buffer, _itemIdx);\n");
+            w.format("                while (_itemIdx < _endIdx) {\n");
+            w.format("                    _addItemIdx(_index, _itemIdx);\n");
+            w.format("                    _itemIdx = _itemSize != 0 ? _itemIdx + _itemSize : LightProtoCodec.skipVarInt(_buffer, _itemIdx);\n");
+            w.format("                }\n");
+            w.format("            }\n");
+            w.println();
+        }
+        w.format("            private void _scan() {\n");
+        w.format("                java.util.Arrays.fill(_fieldIdxs, -1);\n");
+        if (hasRepeated) {
+            w.format("                java.util.Arrays.fill(_itemsCounts, 0);\n");
+        }
+        w.format("                int _idx = _offset;\n");
+        w.format("                int _endIdx = _offset + _length;\n");
+        w.format("                while (_idx < _endIdx) {\n");
+        w.format("                    int _fieldEndIdx = LightProtoCodec.findFieldEnd(_buffer, _idx, _endIdx);\n");
+        w.format("                    if (_fieldEndIdx < 0) {\n");
+        w.format("                        throw new IllegalArgumentException(\"Malformed message\");\n");
+        w.format("                    }\n");
+        w.format("                    int _tag = LightProtoCodec.getTag(_buffer, _idx);\n");
+        w.format("                    switch (_tag) {\n");
+        fields.forEach(f -> f.viewScan(w));
+        w.format("                    }\n");
+        w.format("                    _idx = _fieldEndIdx;\n");
+        w.format("                }\n");
+        w.format("                _scanned = true;\n");
+        w.format("            }\n");
+        w.println();
+        fields.forEach(f -> {
+            if (!f.isRepeated()) {
+                w.format("            public boolean %s() {\n", Util.camelCase("has", f.field.getName()));
+                w.format("                return _fieldIdx(%d) != -1;\n", f.index());
+                w.format("            }\n");
+            }
+            f.viewGetter(w);
+        });
+        w.format("        }\n");
+    }
+
+    /**
+     * Generates clear(), which only resets the fields that are set, or the repeated ones holding items, so that its
+     * cost follows the number of populated fields rather than the width of the message. The fields are otherwise
+     * already in their cleared state.
+     */
     private void generateClear(PrintWriter w) {
         w.format("        public %s clear() {\n", message.getName());
-        for (LightProtoField f : fields) {
-            f.clear(w);
+        for (int i = 0; i < bitFieldsCount(); i++) {
+            Map<LightProtoField, String> clears = new LinkedHashMap<>();
+            for (LightProtoField f : fields) {
+                String code = capture(f::clear);
+                if (f.index() / 32 == i && !code.trim().isEmpty()) {
+                    clears.put(f, code);
+                }
+            }
+            if (clears.isEmpty()) {
+                continue;
+            }
+
+            w.format("            for (int _set = _bitField%d | _nonEmptyFields%d; _set != 0; _set &= _set - 1) {\n", i, i);
+            w.format("                switch (Integer.numberOfTrailingZeros(_set)) {\n");
+            clears.forEach((f, code) -> {
+                w.format("                case %d:\n", f.index() % 32);
+                w.print(code);
+                w.format("                    break;\n");
+            });
+            w.format("                }\n");
+            w.format("            }\n");
         }
 
         w.format("            _parsedBuffer = null;\n");
-        w.format("            _cachedSize = -1;\n");
+        w.format("            _parseEndIdx = -1;\n");
+        w.format("            _unknownFieldRangesCount = 0;\n");
+        if (copyUnmodifiedFields) {
+            w.format("            _parsedLen = -1;\n");
+        }
+        w.format("            _clearCachedSize();\n");
         for (int i = 0; i < bitFieldsCount(); i++) {
             w.format("            _bitField%d = 0;\n", i);
+            w.format("            _nonEmptyFields%d = 0;\n", i);
+            if (copyUnmodifiedFields) {
+                w.format("            _modifiedFields%d = -1;\n", i);
+            }
         }
 
         w.format("            return this;\n");
@@ -141,45 +957,240 @@ public class LightProtoMessage {
     }
 
     private void generateCopyFrom(PrintWriter w) {
-        w.format("public %s copyFrom(%s _other) {\n", message.getName(), message.getName());
-        w.format("            _cachedSize = -1;\n");
+        Map<LightProtoField, FieldCode> codes = new LinkedHashMap<>();
         for (LightProtoField f : fields) {
-            if (f.isRepeated()) {
-                f.copy(w);
-            } else {
-                w.format("    if (_other.%s()) {\n", Util.camelCase("has", f.ccName));
-                f.copy(w);
-                w.format("    }\n");
-            }
+            String name = "_" + Util.camelCase("copy", f.ccName, "field");
+            codes.put(f, new FieldCode(f::copy, String.format("private void %s(%s _other)", name, message.getName()), null,
+                    name + "(_other);"));
         }
 
-        w.format("            return this;\n");
-        w.format("        }\n");
+        generateSplittable(w, "copyFrom", codes.values(), mw -> {
+            mw.format("        public %s copyFrom(%s _other) {\n", message.getName(), message.getName());
+            mw.format("            _clearCachedSize();\n");
+            for (LightProtoField f : fields) {
+                if (f.isRepeated()) {
+                    codes.get(f).generate(mw);
+                } else {
+                    mw.format("            if (_other.%s()) {\n", Util.camelCase("has", f.ccName));
+                    codes.get(f).generate(mw);
+                    mw.format("            }\n");
+                }
+            }
+
+            mw.format("            return this;\n");
+            mw.format("        }\n");
+        });
     }
 
     private void generateSerialize(PrintWriter w) {
         w.format("        public int writeTo(io.netty.buffer.ByteBuf _b) {\n");
         if (hasRequiredFields()) {
+            // Checked before computing the size, since missing required messages would not be sized
             w.format("            checkRequiredFields();\n");
         }
+        // Reserve the whole message once, the fields are then written at absolute indexes
+        w.format("            _b.ensureWritable(getSerializedSize());\n");
         w.format("            int _writeIdx = _b.writerIndex();\n");
+        w.format("            int _idx = _writeTo(_b, _writeIdx);\n");
+        w.format("            _b.writerIndex(_idx);\n");
+        w.format("            return (_idx - _writeIdx);\n");
+        w.format("        }\n");
+        w.format("\n");
+        if (tableDriven) {
+            generateTableWriteTo(w);
+            return;
+        }
+
+        Map<LightProtoField, FieldCode> codes = new LinkedHashMap<>();
         for (LightProtoField f : fields) {
+            String name = "_" + Util.camelCase("write", f.ccName, "field");
+            codes.put(f, new FieldCode(f::serialize, "private int " + name + "(io.netty.buffer.ByteBuf _b, int _idx)", "_idx",
+                    "_idx = " + name + "(_b, _idx);"));
+        }
+        generateSplittable(w, "_writeTo", codes.values(), mw -> generateWriteTo(mw, codes));
+    }
 
+    private void generateTableWriteTo(PrintWriter w) {
+        w.format("        int _writeTo(io.netty.buffer.ByteBuf _b, int _idx) {\n");
+        if (hasRequiredFields()) {
+            w.format("            checkRequiredFields();\n");
+        }
+        if (copyUnmodifiedFields) {
+            // The parsed message is copied as long as it is not modified, and otherwise fully re-encoded
+            w.format("            if (_parsedLen != -1 && %s) {\n", noModifiedFields());
+            w.format("                _b.setBytes(_idx, _parsedBuffer, _parsedIdx, _parsedLen);\n");
+            w.format("                return _idx + _parsedLen;\n");
+            w.format("            }\n");
+        }
+        w.format("            _idx = LightProtoCodec.writeFields(this, _SCHEMA, _b, _idx);\n");
+        w.format("            for (int i = 0; i < _unknownFieldRangesCount; i += 2) {\n");
+        w.format("                int _len = _unknownFieldRanges[i + 1];\n");
+        w.format("                _b.setBytes(_idx, _parsedBuffer, _unknownFieldRanges[i], _len);\n");
+        w.format("                _idx += _len;\n");
+        w.format("            }\n");
+        w.format("            return _idx;\n");
+        w.format("        }\n");
+    }
+
+    private void generateWriteTo(PrintWriter w, Map<LightProtoField, FieldCode> codes) {
+        w.format("        int _writeTo(io.netty.buffer.ByteBuf _b, int _idx) {\n");
+        if (hasRequiredFields()) {
+            w.format("            checkRequiredFields();\n");
+        }
+        if (!copyUnmodifiedFields) {
+            for (LightProtoField f : fields) {
+                if (f.isRequired() || f.isRepeated()) {
+                    // If required, skip the has() check
+                    codes.get(f).generate(w);
+                } else {
+                    w.format("            if (%s()) {\n", Util.camelCase("has", f.field.getName()));
+                    codes.get(f).generate(w);
+                    w.format("            }\n");
+                }
+            }
+            generateWriteUnknownFields(w);
+            return;
+        }
+        // Once parsed, the unmodified fields are copied from the parsed buffer, and each modified field is
+        // re-encoded in between, before the parsed fields with a greater number
+        w.format("            boolean _spliced = _parsedLen != -1;\n");
+        w.format("            if (_spliced && %s) {\n", noModifiedFields());
+        w.format("                _b.setBytes(_idx, _parsedBuffer, _parsedIdx, _parsedLen);\n");
+        w.format("                return _idx + _parsedLen;\n");
+        w.format("            }\n");
+        w.format("            int _parsedFieldIdx = _parsedIdx;\n");
+        for (LightProtoField f : fields) {
+            w.format("            if (!_spliced || %s) {\n", fieldModified(f));
+            w.format("            if (_spliced) {\n");
+            w.format("                long _next = _writeUnmodifiedFields(_b, _idx, _parsedFieldIdx, %s);\n", f.fieldNumber());
+            w.format("                _idx = (int) _next;\n");
+            w.format("                _parsedFieldIdx = (int) (_next >>> 32);\n");
+            w.format("            }\n");
             if (f.isRequired() || f.isRepeated()) {
                 // If required, skip the has() check
-                f.serialize(w);
+                codes.get(f).generate(w);
             } else {
                 w.format("            if (%s()) {\n", Util.camelCase("has", f.field.getName()));
-                f.serialize(w);
+                codes.get(f).generate(w);
                 w.format("            }\n");
             }
+            w.format("            }\n");
         }
 
-        w.format("            return (_b.writerIndex() - _writeIdx);\n");
+        w.format("            if (_spliced) {\n");
+        w.format("                return (int) _writeUnmodifiedFields(_b, _idx, _parsedFieldIdx, Integer.MAX_VALUE);\n");
+        w.format("            }\n");
+        generateWriteUnknownFields(w);
+    }
+
+    private void generateWriteUnknownFields(PrintWriter w) {
+        w.format("            for (int i = 0; i < _unknownFieldRangesCount; i += 2) {\n");
+        w.format("                int _len = _unknownFieldRanges[i + 1];\n");
+        w.format("                _b.setBytes(_idx, _parsedBuffer, _unknownFieldRanges[i], _len);\n");
+        w.format("                _idx += _len;\n");
+        w.format("            }\n");
+        w.format("            return _idx;\n");
+        w.format("        }\n");
+    }
+
+    private void generateDelimited(PrintWriter w) {
+        w.format("        public int writeDelimitedTo(io.netty.buffer.ByteBuf _b) {\n");
+        if (hasRequiredFields()) {
+            w.format("            checkRequiredFields();\n");
+        }
+        w.format("            int _size = getSerializedSize();\n");
+        w.format("            _b.ensureWritable(LightProtoCodec.computeVarIntSize(_size) + _size);\n");
+        w.format("            int _writeIdx = _b.writerIndex();\n");
+        w.format("            int _idx = LightProtoCodec.setVarInt(_b, _writeIdx, _size);\n");
+        w.format("            _idx = _writeTo(_b, _idx);\n");
+        w.format("            _b.writerIndex(_idx);\n");
+        w.format("            return (_idx - _writeIdx);\n");
+        w.format("        }\n");
+        w.format("\n");
+        w.format("        public void parseDelimitedFrom(io.netty.buffer.ByteBuf _buffer) {\n");
+        w.format("            int _size = LightProtoCodec.readVarInt(_buffer);\n");
+        w.format("            parseFrom(_buffer, _size);\n");
+        w.format("        }\n");
+        w.format("\n");
+        // Each record is parsed into this same instance, and the iterator is allocated once per instance, then
+        // re-pointed to the next buffer
+        w.format("        private DelimitedIterator _delimitedIterator = null;\n");
+        w.format("\n");
+        w.format("        public DelimitedIterator delimitedIterator(io.netty.buffer.ByteBuf _buffer) {\n");
+        w.format("            if (_delimitedIterator == null) {\n");
+        w.format("                _delimitedIterator = new DelimitedIterator();\n");
+        w.format("            }\n");
+        w.format("            return _delimitedIterator.reset(_buffer);\n");
+        w.format("        }\n");
+        w.format("\n");
+        w.format("        public final class DelimitedIterator implements java.util.Iterator<%s> {\n", message.getName());
+        w.format("            private io.netty.buffer.ByteBuf _buffer;\n");
+        w.format("\n");
+        w.format("            private DelimitedIterator() {\n");
+        w.format("            }\n");
+        w.format("\n");
+        w.format("            public DelimitedIterator reset(io.netty.buffer.ByteBuf _buffer) {\n");
+        w.format("                this._buffer = _buffer;\n");
+        w.format("                return this;\n");
+        w.format("            }\n");
+        w.format("\n");
+        w.format("            @Override\n");
+        w.format("            public boolean hasNext() {\n");
+        w.format("                return _buffer.isReadable();\n");
+        w.format("            }\n");
+        w.format("\n");
+        w.format("            @Override\n");
+        w.format("            public %s next() {\n", message.getName());
+        w.format("                if (!hasNext()) {\n");
+        w.format("                    throw new java.util.NoSuchElementException();\n");
+        w.format("                }\n");
+        w.format("                parseDelimitedFrom(_buffer);\n");
+        w.format("                return %s.this;\n", message.getName());
+        w.format("            }\n");
         w.format("        }\n");
     }
 
     private void generateGetSerializedSize(PrintWriter w) {
+        if (tableDriven) {
+            generateTableGetSerializedSize(w);
+            return;
+        }
+        Map<LightProtoField, FieldCode> codes = new LinkedHashMap<>();
+        for (LightProtoField f : fields) {
+            String name = "_" + Util.camelCase("size", "of", f.ccName, "field");
+            codes.put(f, new FieldCode(f::serializedSize, "private int " + name + "(int _size)", "_size",
+                    "_size = " + name + "(_size);"));
+        }
+        generateSplittable(w, "getSerializedSize", codes.values(), mw -> generateGetSerializedSize(mw, codes));
+    }
+
+    private void generateTableGetSerializedSize(PrintWriter w) {
+        w.format("        public int getSerializedSize() {\n");
+        w.format("            if (_cachedSize > -1) {\n");
+        w.format("                return _cachedSize;\n");
+        w.format("            }\n");
+        if (copyUnmodifiedFields) {
+            w.format("            int _size;\n");
+            w.format("            if (_parsedLen != -1 && %s) {\n", noModifiedFields());
+            w.format("                _size = _parsedLen;\n");
+            w.format("            } else {\n");
+            w.format("                _size = LightProtoCodec.computeFieldsSize(this, _SCHEMA);\n");
+            w.format("                for (int i = 1; i < _unknownFieldRangesCount; i += 2) {\n");
+            w.format("                    _size += _unknownFieldRanges[i];\n");
+            w.format("                }\n");
+            w.format("            }\n");
+        } else {
+            w.format("            int _size = LightProtoCodec.computeFieldsSize(this, _SCHEMA);\n");
+            w.format("            for (int i = 1; i < _unknownFieldRangesCount; i += 2) {\n");
+            w.format("                _size += _unknownFieldRanges[i];\n");
+            w.format("            }\n");
+        }
+        w.format("            _cachedSize = _size;\n");
+        w.format("            return _size;\n");
+        w.format("        }\n");
+    }
+
+    private void generateGetSerializedSize(PrintWriter w, Map<LightProtoField, FieldCode> codes) {
         w.format("public int getSerializedSize() {\n");
         w.format("    if (_cachedSize > -1) {\n");
         w.format("        return _cachedSize;\n");
@@ -187,24 +1198,184 @@ public class LightProtoMessage {
         w.format("\n");
 
         w.format("    int _size = 0;\n");
+        if (!copyUnmodifiedFields) {
+            fields.forEach(field -> {
+                if (field.isRequired() || field.isRepeated()) {
+                    codes.get(field).generate(w);
+                } else {
+                    w.format("    if (%s()) {\n", Util.camelCase("has", field.field.getName()));
+                    codes.get(field).generate(w);
+                    w.format("    }\n");
+                }
+            });
+            w.format("    for (int i = 1; i < _unknownFieldRangesCount; i += 2) {\n");
+            w.format("        _size += _unknownFieldRanges[i];\n");
+            w.format("    }\n");
+            w.format("            _cachedSize = _size;\n");
+            w.format("            return _size;\n");
+            w.format("        }\n");
+            return;
+        }
+        w.format("    boolean _spliced = _parsedLen != -1;\n");
+        w.format("    if (_spliced) {\n");
+        w.format("        if (%s) {\n", noModifiedFields());
+        w.format("            _cachedSize = _parsedLen;\n");
+        w.format("            return _parsedLen;\n");
+        w.format("        }\n");
+        w.format("        _size = (int) _writeUnmodifiedFields(null, 0, _parsedIdx, Integer.MAX_VALUE);\n");
+        w.format("    }\n");
         fields.forEach(field -> {
+            w.format("    if (!_spliced || %s) {\n", fieldModified(field));
             if (field.isRequired() || field.isRepeated()) {
-                field.serializedSize(w);
+                codes.get(field).generate(w);
             } else {
                 w.format("        if (%s()) {\n", Util.camelCase("has", field.field.getName()));
-                field.serializedSize(w);
+                codes.get(field).generate(w);
                 w.format("        }\n");
             }
+            w.format("    }\n");
         });
+        w.format("    if (!_spliced) {\n");
+        w.format("        for (int i = 1; i < _unknownFieldRangesCount; i += 2) {\n");
+        w.format("            _size += _unknownFieldRanges[i];\n");
+        w.format("        }\n");
+        w.format("    }\n");
 
         w.format("            _cachedSize = _size;\n");
         w.format("            return _size;\n");
         w.format("        }\n");
     }
 
+    private void generateClearCachedSize(PrintWriter w) {
+        // Invalidating a message invalidates all the messages containing it. A message whose size is not cached
+        // has no cached ancestors either, so the propagation stops there.
+        w.format("        public void _clearCachedSize() {\n");
+        w.format("            if (_cachedSize != -1) {\n");
+        w.format("                _cachedSize = -1;\n");
+        w.format("                if (_parent != null) {\n");
+        w.format("                    _parent._clearCachedSize();\n");
+        w.format("                }\n");
+        w.format("            }\n");
+        w.format("        }\n");
+        w.format("\n");
+        w.format("        void _setParent(LightProtoCodec.ParentMessage _parent, int _parentField) {\n");
+        w.format("            this._parent = _parent;\n");
+        w.format("            this._parentField = _parentField;\n");
+        w.format("        }\n");
+    }
+
+    private void generateModifiedFields(PrintWriter w) {
+        if (!copyUnmodifiedFields) {
+            // Without parsed bytes to reuse, a modification only invalidates the cached sizes
+            w.format("        public void _fieldModified(int _index) {\n");
+            w.format("            _clearCachedSize();\n");
+            w.format("        }\n");
+            w.format("\n");
+            return;
+        }
+        // Fields modified since the message was parsed. A cleared message has no parsed bytes to reuse, so all its
+        // fields are considered modified and its parent only gets notified once it is parsed again.
+        for (int i = 0; i < bitFieldsCount(); i++) {
+            w.format("        private int _modifiedFields%d = -1;\n", i);
+        }
+        w.format("        private int _parsedIdx;\n");
+        w.format("        private int _parsedLen = -1;\n");
+        w.format("\n");
+        w.format("        public void _fieldModified(int _index) {\n");
+        w.format("            boolean _wasUnmodified = %s;\n", noModifiedFields());
+        if (bitFieldsCount() > 0) {
+            w.format("            switch (_index >> 5) {\n");
+            for (int i = 0; i < bitFieldsCount(); i++) {
+                w.format("            case %d:\n", i);
+                w.format("                _modifiedFields%d |= 1 << (_index & 31);\n", i);
+                w.format("                break;\n");
+            }
+            w.format("            }\n");
+        }
+        w.format("            _clearCachedSize();\n");
+        w.format("            if (_wasUnmodified && _parent != null) {\n");
+        w.format("                _parent._fieldModified(_parentField);\n");
+        w.format("            }\n");
+        w.format("        }\n");
+        w.format("\n");
+        if (tableDriven) {
+            // The modified table-driven messages are always fully re-encoded
+            return;
+        }
+
+        w.format("        private boolean _isFieldModified(int _tag) {\n");
+        w.format("            switch (_tag) {\n");
+        for (LightProtoField field : fields) {
+            w.format("            case %s:\n", field.tagName());
+            if (field.isPackable()) {
+                w.format("            case %s_PACKED:\n", field.tagName());
+            }
+            w.format("                return %s;\n", fieldModified(field));
+        }
+        w.format("            default:\n");
+        // Unknown fields are always copied
+        w.format("                return false;\n");
+        w.format("            }\n");
+        w.format("        }\n");
+        w.format("\n");
+
+        // Copies the runs of unmodified fields from the parsed buffer, starting at _fieldIdx and up to the first field
+        // whose number is not lower than _fieldNumber, or only counts their size when _b is null. Returns the parsed
+        // buffer index reached in the upper 32 bits and the output index in the lower 32 bits.
+        w.format("        private long _writeUnmodifiedFields(io.netty.buffer.ByteBuf _b, int _idx, int _fieldIdx, int _fieldNumber) {\n");
+        w.format("            int _endIdx = _parsedIdx + _parsedLen;\n");
+        w.format("            int _runIdx = _fieldIdx;\n");
+        w.format("            while (_fieldIdx < _endIdx) {\n");
+        w.format("                int _tag = LightProtoCodec.getTag(_parsedBuffer, _fieldIdx);\n");
+        w.format("                if (LightProtoCodec.getFieldId(_tag) >= _fieldNumber) {\n");
+        w.format("                    break;\n");
+        w.format("                }\n");
+        w.format("                int _fieldEnd = LightProtoCodec.findFieldEnd(_parsedBuffer, _fieldIdx, _endIdx);\n");
+        w.format("                if (_fieldEnd < 0) {\n");
+        w.format("                    throw new IllegalArgumentException(\"Malformed message\");\n");
+        w.format("                }\n");
+        w.format("                if (_isFieldModified(_tag)) {\n");
+        w.format("                    if (_b != null) {\n");
+        w.format("                        _b.setBytes(_idx, _parsedBuffer, _runIdx, _fieldIdx - _runIdx);\n");
+        w.format("                    }\n");
+        w.format("                    _idx += _fieldIdx - _runIdx;\n");
+        w.format("                    _runIdx = _fieldEnd;\n");
+        w.format("                }\n");
+        w.format("                _fieldIdx = _fieldEnd;\n");
+        w.format("            }\n");
+        w.format("            if (_b != null) {\n");
+        w.format("                _b.setBytes(_idx, _parsedBuffer, _runIdx, _fieldIdx - _runIdx);\n");
+        w.format("            }\n");
+        w.format("            _idx += _fieldIdx - _runIdx;\n");
+        w.format("            return ((long) _fieldIdx << 32) | _idx;\n");
+        w.format("        }\n");
+    }
+
+    private String noModifiedFields() {
+        if (bitFieldsCount() == 0) {
+            return "true";
+        } else if (bitFieldsCount() == 1) {
+            return "_modifiedFields0 == 0";
+        }
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < bitFieldsCount(); i++) {
+            if (i != 0) {
+                sb.append(" | ");
+            }
+            sb.append("_modifiedFields").append(i);
+        }
+        return sb.append(") == 0").toString();
+    }
+
+    private static String fieldModified(LightProtoField field) {
+        return String.format("(_modifiedFields%d & %s) != 0", field.bitFieldIndex(), field.fieldMask());
+    }
+
     private void generateBitFields(PrintWriter w) {
         for (int i = 0; i < bitFieldsCount(); i++) {
             w.format("private int _bitField%d;\n", i);
+            // Repeated fields holding at least one item
+            w.format("private int _nonEmptyFields%d;\n", i);
             w.format("private static final int _REQUIRED_FIELDS_MASK%d = 0", i);
             int idx = i;
             fields.forEach(f -> {
@@ -222,19 +1393,22 @@ public class LightProtoMessage {
         }
 
         w.format("        private void checkRequiredFields() {\n");
-        w.format("            if (");
+        w.format("            if (%s)   {\n", requiredFieldsMissing());
+        w.format("      throw new IllegalStateException(\"Some required fields are missing\");\n");
+        w.format("    }\n");
+        w.format("}\n");
+    }
+
+    private String requiredFieldsMissing() {
+        StringBuilder sb = new StringBuilder();
         for (int i = 0; i < bitFieldsCount(); i++) {
             if (i != 0) {
-                w.print("\n             || ");
+                sb.append("\n             || ");
             }
 
-            w.format("(_bitField%d & _REQUIRED_FIELDS_MASK%d) != _REQUIRED_FIELDS_MASK%d", i, i, i);
+            sb.append(String.format("(_bitField%d & _REQUIRED_FIELDS_MASK%d) != _REQUIRED_FIELDS_MASK%d", i, i, i));
         }
-
-        w.format(")   {\n");
-        w.format("      throw new IllegalStateException(\"Some required fields are missing\");\n");
-        w.format("    }\n");
-        w.format("}\n");
+        return sb.toString();
     }
 
     private int bitFieldsCount() {
@@ -255,4 +1429,66 @@ public class LightProtoMessage {
 
         return false;
     }
+
+    /**
+     * Generates a method handling each field with its field code. As long as the estimated bytecode size of the
+     * method is over the limit, the largest field codes are outlined into helper methods, generated after it.
+     */
+    private void generateSplittable(PrintWriter w, String methodName, Collection<FieldCode> fieldCodes,
+                                    Consumer<PrintWriter> method) {
+        List<FieldCode> bySize = new ArrayList<>(fieldCodes);
+        bySize.sort(Comparator.comparingInt((FieldCode c) -> c.size).reversed());
+        String code = capture(method);
+        int size = Util.estimateBytecodeSize(code);
+        for (FieldCode fieldCode : bySize) {
+            if (size <= METHOD_SIZE_LIMIT || fieldCode.size <= Util.estimateBytecodeSize(fieldCode.call)) {
+                break;
+            }
+            if (!fieldCode.outlined) {
+                fieldCode.outlined = true;
+                code = capture(method);
+                size = Util.estimateBytecodeSize(code);
+            }
+        }
+
+        methodSizes.put(methodName, size);
+        w.print(code);
+        for (FieldCode fieldCode : fieldCodes) {
+            // The helpers of the field codes shared by several methods are only generated once
+            if (fieldCode.outlined && generatedHelpers.add(fieldCode.helper)) {
+                w.print(fieldCode.helper);
+            }
+        }
+    }
+
+    private static String capture(Consumer<PrintWriter> generator) {
+        StringWriter sw = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(sw)) {
+            generator.accept(pw);
+        }
+        return sw.toString();
+    }
+
+    /**
+     * The code handling a field within a generated method, either inlined or outlined into a private helper method.
+     * The helper takes the local variables used by the code, and returns the one it updates.
+     */
+    private static final class FieldCode {
+        private final String code;
+        private final String helper;
+        private final String call;
+        private final int size;
+        private boolean outlined;
+
+        FieldCode(Consumer<PrintWriter> generator, String declaration, String result, String call) {
+            this.code = capture(generator);
+            this.helper = declaration + " {\n" + code + (result != null ? "return " + result + ";\n" : "") + "}\n";
+            this.call = call + "\n";
+            this.size = Util.estimateBytecodeSize(code);
+        }
+
+        void generate(PrintWriter w) {
+            w.print(outlined ? call : code);
+        }
+    }
 }
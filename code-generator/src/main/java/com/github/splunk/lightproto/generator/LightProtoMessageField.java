@@ -21,8 +21,11 @@ import java.io.PrintWriter;
 
 public class LightProtoMessageField extends LightProtoField<MessageField> {
 
-    public LightProtoMessageField(MessageField field, int index) {
+    private final boolean tableDrivenType;
+
+    public LightProtoMessageField(MessageField field, int index, boolean tableDrivenType) {
         super(field, index);
+        this.tableDrivenType = tableDrivenType;
     }
 
     @Override
@@ -35,9 +38,10 @@ public class LightProtoMessageField extends LightProtoField<MessageField> {
         w.format("public %s %s() {\n", field.getJavaType(), Util.camelCase("set", ccName));
         w.format("    if (%s == null) {\n", ccName);
         w.format("        %s = new %s();\n", ccName, field.getJavaType());
+        w.format("        %s._setParent(this, %d);\n", ccName, index);
         w.format("    }\n");
         w.format("    _bitField%d |= %s;\n", bitFieldIndex(), fieldMask());
-        w.format("    _cachedSize = -1;\n");
+        w.format("    _fieldModified(%d);\n", index);
         w.format("    return %s;\n", ccName);
         w.format("}\n");
     }
@@ -50,7 +54,7 @@ public class LightProtoMessageField extends LightProtoField<MessageField> {
     public void getter(PrintWriter w) {
         w.format("public %s %s() {\n", field.getJavaType(), Util.camelCase("get", field.getName()));
         w.format("    if (!%s()) {\n", Util.camelCase("has", ccName));
-        w.format("        throw new IllegalStateException(\"Field '%s' is not set\");\n", field.getName());
+        w.format("        throw LightProtoCodec.fieldNotSet(\"%s\");\n", field.getName());
         w.format("    }\n");
         w.format("    return %s;\n", ccName);
         w.format("}\n");
@@ -62,19 +66,44 @@ public class LightProtoMessageField extends LightProtoField<MessageField> {
         w.format("%s().parseFrom(_buffer, %sSize);\n", Util.camelCase("set", ccName), ccName);
     }
 
+    @Override
+    public void parseAt(PrintWriter w) {
+        getLengthAt(w, "int " + ccName + "Size", ccName + "Size");
+        if (tableDrivenType) {
+            // Parsed from the source buffer, at the index the cursor is shifted from
+            w.format("%s()._parseFrom(_source, _source, 0, _idx - _base, %sSize);\n", Util.camelCase("set", ccName), ccName);
+        } else {
+            w.format("%s()._parseFrom(_source, _buffer, _base, _idx - _base, %sSize);\n", Util.camelCase("set", ccName), ccName);
+        }
+        w.format("_idx += %sSize;\n", ccName);
+    }
+
     @Override
     public void serializedSize(PrintWriter w) {
         String tmpName = Util.camelCase("_msgSize", ccName);
-        w.format("_size += LightProtoCodec.computeVarIntSize(%s);\n", tagName());
+        w.format("_size += %s_SIZE;\n", tagName());
         w.format("int %s = %s.getSerializedSize();\n", tmpName, ccName);
         w.format("_size += LightProtoCodec.computeVarIntSize(%s) + %s;\n", tmpName, tmpName);
     }
 
+    @Override
+    public void viewGetter(PrintWriter w) {
+        // The view of the nested message is created once and then re-pointed on every access
+        String javaType = field.getJavaType();
+        String viewType = javaType + "." + javaType.substring(javaType.lastIndexOf('.') + 1) + "View";
+        w.format("private %s _%sView;\n", viewType, ccName);
+        viewGetter(w, viewType, Util.camelCase("get", ccName), null, () -> {
+            w.format("        if (_%sView == null) {\n", ccName);
+            w.format("            _%sView = new %s();\n", ccName, viewType);
+            w.format("        }\n");
+            w.format("        return _%sView.wrap(_buffer, LightProtoCodec.skipVarInt(_buffer, _idx), LightProtoCodec.getVarInt(_buffer, _idx));\n", ccName);
+        });
+    }
+
     @Override
     public void serialize(PrintWriter w) {
-        w.format("LightProtoCodec.writeVarInt(_b, %s);\n", tagName());
-        w.format("LightProtoCodec.writeVarInt(_b, %s.getSerializedSize());\n", ccName);
-        w.format("%s.writeTo(_b);\n", ccName);
+        w.format("_idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, %s.getSerializedSize());\n", tagName(), tagName(), ccName);
+        w.format("_idx = %s._writeTo(_b, _idx);\n", ccName);
     }
 
     @Override
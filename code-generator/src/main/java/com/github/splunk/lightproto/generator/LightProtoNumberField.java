@@ -50,33 +50,59 @@ public class LightProtoNumberField extends LightProtoField<Field<?>> {
 
     static void serializeNumber(PrintWriter w, Field<?> field, String name) {
         if (field.isEnumField()) {
-            w.format("                LightProtoCodec.writeVarInt(_b, %s.getValue());\n", name);
+            w.format("                _idx = LightProtoCodec.setVarInt(_b, _idx, %s.getValue());\n", name);
         } else if (field.getProtoType().equals("bool")) {
-            w.format("                _b.writeBoolean(%s);\n", name);
+            w.format("                _idx = LightProtoCodec.setBoolean(_b, _idx, %s);\n", name);
         } else if (field.getProtoType().equals("int32")) {
-            w.format("                LightProtoCodec.writeVarInt(_b, %s);\n", name);
+            w.format("                _idx = LightProtoCodec.setVarInt(_b, _idx, %s);\n", name);
         } else if (field.getProtoType().equals("uint32")) {
-            w.format("                LightProtoCodec.writeVarInt(_b, %s);\n", name);
+            w.format("                _idx = LightProtoCodec.setVarInt(_b, _idx, %s);\n", name);
         } else if (field.getProtoType().equals("sint32")) {
-            w.format("                LightProtoCodec.writeSignedVarInt(_b, %s);\n", name);
+            w.format("                _idx = LightProtoCodec.setSignedVarInt(_b, _idx, %s);\n", name);
         } else if (field.getProtoType().equals("sint64")) {
-            w.format("                LightProtoCodec.writeSignedVarInt64(_b, %s);\n", name);
+            w.format("                _idx = LightProtoCodec.setSignedVarInt64(_b, _idx, %s);\n", name);
         } else if (field.getProtoType().equals("int64")) {
-            w.format("                LightProtoCodec.writeVarInt64(_b, %s);\n", name);
+            w.format("                _idx = LightProtoCodec.setVarInt64(_b, _idx, %s);\n", name);
         } else if (field.getProtoType().equals("uint64")) {
-            w.format("                LightProtoCodec.writeVarInt64(_b, %s);\n", name);
+            w.format("                _idx = LightProtoCodec.setVarInt64(_b, _idx, %s);\n", name);
         } else if (field.getProtoType().equals("fixed32")) {
-            w.format("                LightProtoCodec.writeFixedInt32(_b, %s);\n", name);
+            w.format("                _idx = LightProtoCodec.setFixedInt32(_b, _idx, %s);\n", name);
         } else if (field.getProtoType().equals("fixed64")) {
-            w.format("                LightProtoCodec.writeFixedInt64(_b, %s);\n", name);
+            w.format("                _idx = LightProtoCodec.setFixedInt64(_b, _idx, %s);\n", name);
         } else if (field.getProtoType().equals("sfixed32")) {
-            w.format("                LightProtoCodec.writeFixedInt32(_b, %s);\n", name);
+            w.format("                _idx = LightProtoCodec.setFixedInt32(_b, _idx, %s);\n", name);
         } else if (field.getProtoType().equals("sfixed64")) {
-            w.format("                LightProtoCodec.writeFixedInt64(_b, %s);\n", name);
+            w.format("                _idx = LightProtoCodec.setFixedInt64(_b, _idx, %s);\n", name);
         } else if (field.getProtoType().equals("double")) {
-            w.format("                LightProtoCodec.writeDouble(_b, %s);\n", name);
+            w.format("                _idx = LightProtoCodec.setDouble(_b, _idx, %s);\n", name);
         } else if (field.getProtoType().equals("float")) {
-            w.format("                LightProtoCodec.writeFloat(_b, %s);\n", name);
+            w.format("                _idx = LightProtoCodec.setFloat(_b, _idx, %s);\n", name);
+        } else {
+            throw new IllegalArgumentException("Failed to write serializer for field: " + field.getProtoType());
+        }
+    }
+
+    static void serializeTagAndNumber(PrintWriter w, Field<?> field, String tagName, String name) {
+        if (field.isEnumField()) {
+            w.format("_idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, %s.getValue());\n", tagName, tagName, name);
+        } else if (field.getProtoType().equals("bool")) {
+            w.format("_idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, %s ? 1 : 0);\n", tagName, tagName, name);
+        } else if (field.getProtoType().equals("int32") || field.getProtoType().equals("uint32")) {
+            w.format("_idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, %s);\n", tagName, tagName, name);
+        } else if (field.getProtoType().equals("sint32")) {
+            w.format("_idx = LightProtoCodec.setTagAndSignedVarInt(_b, _idx, %s_BYTES, %s_SIZE, %s);\n", tagName, tagName, name);
+        } else if (field.getProtoType().equals("sint64")) {
+            w.format("_idx = LightProtoCodec.setTagAndSignedVarInt64(_b, _idx, %s_BYTES, %s_SIZE, %s);\n", tagName, tagName, name);
+        } else if (field.getProtoType().equals("int64") || field.getProtoType().equals("uint64")) {
+            w.format("_idx = LightProtoCodec.setTagAndVarInt64(_b, _idx, %s_BYTES, %s_SIZE, %s);\n", tagName, tagName, name);
+        } else if (field.getProtoType().equals("fixed32") || field.getProtoType().equals("sfixed32")) {
+            w.format("_idx = LightProtoCodec.setTagAndFixedInt32(_b, _idx, %s_BYTES, %s_SIZE, %s);\n", tagName, tagName, name);
+        } else if (field.getProtoType().equals("fixed64") || field.getProtoType().equals("sfixed64")) {
+            w.format("_idx = LightProtoCodec.setTagAndFixedInt64(_b, _idx, %s_BYTES, %s_SIZE, %s);\n", tagName, tagName, name);
+        } else if (field.getProtoType().equals("double")) {
+            w.format("_idx = LightProtoCodec.setTagAndDouble(_b, _idx, %s_BYTES, %s_SIZE, %s);\n", tagName, tagName, name);
+        } else if (field.getProtoType().equals("float")) {
+            w.format("_idx = LightProtoCodec.setTagAndFloat(_b, _idx, %s_BYTES, %s_SIZE, %s);\n", tagName, tagName, name);
         } else {
             throw new IllegalArgumentException("Failed to write serializer for field: " + field.getProtoType());
         }
@@ -116,6 +142,132 @@ public class LightProtoNumberField extends LightProtoField<Field<?>> {
         }
     }
 
+    static String getNumber(Field<?> field, String idx) {
+        if (field.isEnumField()) {
+            return String.format("%s.valueOf(LightProtoCodec.getVarInt(_buffer, %s))", field.getJavaType(), idx);
+        } else if (field.getProtoType().equals("bool")) {
+            return String.format("LightProtoCodec.getVarInt(_buffer, %s) == 1", idx);
+        } else if (field.getProtoType().equals("int32") || field.getProtoType().equals("uint32")) {
+            return String.format("LightProtoCodec.getVarInt(_buffer, %s)", idx);
+        } else if (field.getProtoType().equals("sint32")) {
+            return String.format("LightProtoCodec.getSignedVarInt(_buffer, %s)", idx);
+        } else if (field.getProtoType().equals("sint64")) {
+            return String.format("LightProtoCodec.getSignedVarInt64(_buffer, %s)", idx);
+        } else if (field.getProtoType().equals("int64") || field.getProtoType().equals("uint64")) {
+            return String.format("LightProtoCodec.getVarInt64(_buffer, %s)", idx);
+        } else if (field.getProtoType().equals("fixed32") || field.getProtoType().equals("sfixed32")) {
+            return String.format("LightProtoCodec.getFixedInt32(_buffer, %s)", idx);
+        } else if (field.getProtoType().equals("fixed64") || field.getProtoType().equals("sfixed64")) {
+            return String.format("LightProtoCodec.getFixedInt64(_buffer, %s)", idx);
+        } else if (field.getProtoType().equals("double")) {
+            return String.format("LightProtoCodec.getDouble(_buffer, %s)", idx);
+        } else if (field.getProtoType().equals("float")) {
+            return String.format("LightProtoCodec.getFloat(_buffer, %s)", idx);
+        } else {
+            throw new IllegalArgumentException("Failed to write parser for field: " + field.getProtoType());
+        }
+    }
+
+    /**
+     * Generates the code declaring a local variable with the number at _idx, and moving _idx past it. Each varint is
+     * decoded once: the 32 bits ones along with their end index, and the 64 bits ones before their end index is found
+     * from the size of their value.
+     */
+    static void getNumberAt(PrintWriter w, Field<?> field, String local) {
+        switch (typeTag(field)) {
+            case "LightProtoCodec.WIRETYPE_FIXED32":
+                w.format("%s %s = %s;\n", field.getJavaType(), local, getNumber(field, "_idx"));
+                w.format("_idx += 4;\n");
+                return;
+            case "LightProtoCodec.WIRETYPE_FIXED64":
+                w.format("%s %s = %s;\n", field.getJavaType(), local, getNumber(field, "_idx"));
+                w.format("_idx += 8;\n");
+                return;
+        }
+        switch (field.getProtoType()) {
+            case "int64":
+            case "uint64":
+                w.format("long %s = LightProtoCodec.getVarInt64(_buffer, _idx);\n", local);
+                w.format("_idx = LightProtoCodec.getVarInt64End(_buffer, _idx, %s);\n", local);
+                break;
+            case "sint64":
+                w.format("long %sRaw = LightProtoCodec.getVarInt64(_buffer, _idx);\n", local);
+                w.format("_idx = LightProtoCodec.getVarInt64End(_buffer, _idx, %sRaw);\n", local);
+                w.format("long %s = LightProtoCodec.decodeZigZag64(%sRaw);\n", local, local);
+                break;
+            default:
+                w.format("long %sAndIdx = LightProtoCodec.getVarIntAndIdx(_buffer, _idx);\n", local);
+                w.format("_idx = (int) (%sAndIdx >>> 32);\n", local);
+                String raw = local + "AndIdx";
+                if (field.getProtoType().equals("sint32")) {
+                    raw = String.format("LightProtoCodec.decodeZigZag32((int) %s)", raw);
+                }
+                w.format("%s %s = %s;\n", field.getJavaType(), local, fromRaw(field, raw));
+        }
+    }
+
+    static String tableKind(Field<?> field) {
+        if (field.isEnumField()) {
+            return "LightProtoCodec.KIND_VARINT32";
+        }
+        switch (field.getProtoType()) {
+            case "int32":
+            case "uint32":
+            case "bool":
+                return "LightProtoCodec.KIND_VARINT32";
+            case "int64":
+            case "uint64":
+                return "LightProtoCodec.KIND_VARINT64";
+            case "sint32":
+                return "LightProtoCodec.KIND_SIGNED_VARINT32";
+            case "sint64":
+                return "LightProtoCodec.KIND_SIGNED_VARINT64";
+            case "fixed32":
+            case "sfixed32":
+            case "float":
+                return "LightProtoCodec.KIND_FIXED32";
+            case "fixed64":
+            case "sfixed64":
+            case "double":
+                return "LightProtoCodec.KIND_FIXED64";
+            default:
+                throw new IllegalArgumentException("Failed to find table kind for field: " + field.getProtoType());
+        }
+    }
+
+    /**
+     * Converts a raw value exchanged with the table-driven codec to the field type.
+     */
+    static String fromRaw(Field<?> field, String value) {
+        if (field.isEnumField()) {
+            return String.format("%s.valueOf((int) %s)", field.getJavaType(), value);
+        } else if (field.getProtoType().equals("bool")) {
+            return String.format("(int) %s == 1", value);
+        } else if (field.getProtoType().equals("float")) {
+            return String.format("Float.intBitsToFloat((int) %s)", value);
+        } else if (field.getProtoType().equals("double")) {
+            return String.format("Double.longBitsToDouble(%s)", value);
+        } else if (field.getJavaType().equals("int")) {
+            return String.format("(int) %s", value);
+        } else {
+            return value;
+        }
+    }
+
+    static String toRaw(Field<?> field, String value) {
+        if (field.isEnumField()) {
+            return String.format("%s.getValue()", value);
+        } else if (field.getProtoType().equals("bool")) {
+            return String.format("%s ? 1L : 0L", value);
+        } else if (field.getProtoType().equals("float")) {
+            return String.format("Float.floatToRawIntBits(%s)", value);
+        } else if (field.getProtoType().equals("double")) {
+            return String.format("Double.doubleToRawLongBits(%s)", value);
+        } else {
+            return value;
+        }
+    }
+
     static String serializedSizeOfNumber(Field<?> field, String name) {
         if (field.isEnumField()) {
             return String.format("LightProtoCodec.computeVarIntSize(%s.getValue())", name);
@@ -150,6 +302,22 @@ public class LightProtoNumberField extends LightProtoField<Field<?>> {
         }
     }
 
+    static String patchVarInt(Field<?> field, String name) {
+        if (field.isEnumField()) {
+            return String.format("LightProtoCodec.patchVarInt(_b, _idx, %s.getValue())", name);
+        } else if (field.getProtoType().equals("bool")) {
+            return String.format("LightProtoCodec.patchVarInt(_b, _idx, %s ? 1 : 0)", name);
+        } else if (field.getProtoType().equals("sint32")) {
+            return String.format("LightProtoCodec.patchSignedVarInt(_b, _idx, %s)", name);
+        } else if (field.getProtoType().equals("sint64")) {
+            return String.format("LightProtoCodec.patchSignedVarInt64(_b, _idx, %s)", name);
+        } else if (field.getProtoType().equals("int64") || field.getProtoType().equals("uint64")) {
+            return String.format("LightProtoCodec.patchVarInt64(_b, _idx, %s)", name);
+        } else {
+            return String.format("LightProtoCodec.patchVarInt(_b, _idx, %s)", name);
+        }
+    }
+
     static String typeTag(Field<?> field) {
         if (field.isEnumField()) {
             return "LightProtoCodec.WIRETYPE_VARINT";
@@ -162,7 +330,7 @@ public class LightProtoNumberField extends LightProtoField<Field<?>> {
         w.format("        public %s %s() {\n", field.getJavaType(), Util.camelCase("get", field.getName()));
         if (!field.isDefaultValueSet()) {
             w.format("            if (!%s()) {\n", Util.camelCase("has", ccName));
-            w.format("                throw new IllegalStateException(\"Field '%s' is not set\");\n", field.getName());
+            w.format("                throw LightProtoCodec.fieldNotSet(\"%s\");\n", field.getName());
             w.format("            }\n");
         }
         w.format("            return %s;\n", ccName);
@@ -174,10 +342,107 @@ public class LightProtoNumberField extends LightProtoField<Field<?>> {
         w.format("%s = %s;\n", ccName, parseNumber(field));
     }
 
+    @Override
+    public void parseAt(PrintWriter w) {
+        getNumberAt(w, field, "_" + ccName + "Value");
+        w.format("%s = _%sValue;\n", ccName, ccName);
+    }
+
+    @Override
+    public boolean isNumber() {
+        return true;
+    }
+
+    @Override
+    public String tableKind() {
+        return tableKind(field);
+    }
+
+    @Override
+    public void tableSetter(PrintWriter w) {
+        if (field.isEnumField()) {
+            // Unknown enum values are rejected, and kept by the codec as unknown fields
+            w.format("%s _%s = %s;\n", field.getJavaType(), ccName, fromRaw(field, "_value"));
+            w.format("if (_%s == null) {\n", ccName);
+            w.format("    return false;\n");
+            w.format("}\n");
+            w.format("_bitField%d |= %s;\n", bitFieldIndex(), fieldMask());
+            w.format("%s = _%s;\n", ccName, ccName);
+        } else {
+            w.format("%s = %s;\n", ccName, fromRaw(field, "_value"));
+            w.format("_bitField%d |= %s;\n", bitFieldIndex(), fieldMask());
+        }
+    }
+
+    @Override
+    public void tableGetter(PrintWriter w) {
+        w.format("return %s;\n", toRaw(field, ccName));
+    }
+
+    @Override
+    public void tableCount(PrintWriter w) {
+        w.format("return (_bitField%d & %s) != 0 ? 1 : 0;\n", bitFieldIndex(), fieldMask());
+    }
+
+    @Override
+    public void editor(PrintWriter w) {
+        // Overwrites the value of the last occurrence, as long as the new value has the same encoded size
+        w.format("public static boolean %s(io.netty.buffer.ByteBuf _b, int _offset, int _length, %s %s) {\n",
+                Util.camelCase("patch", ccName), field.getJavaType(), ccName);
+        w.format("    int _fieldIdx = LightProtoCodec.findLastField(_b, _offset, _offset + _length, %s);\n", tagName());
+        w.format("    if (_fieldIdx == -1) {\n");
+        w.format("        return false;\n");
+        w.format("    }\n");
+        w.format("    int _idx = LightProtoCodec.skipVarInt(_b, _fieldIdx);\n");
+        if (typeTag(field).equals("LightProtoCodec.WIRETYPE_VARINT")) {
+            w.format("    if (LightProtoCodec.skipVarInt(_b, _idx) - _idx != %s) {\n", serializedSizeOfNumber(field, ccName));
+            w.format("        return false;\n");
+            w.format("    }\n");
+            w.format("    %s;\n", patchVarInt(field, ccName));
+        } else {
+            serializeNumber(w, field, ccName);
+        }
+        w.format("    return true;\n");
+        w.format("}\n");
+
+        appender(w, ccName, field.getJavaType(), null, serializedSizeOfNumber(field, ccName),
+                () -> serializeTagAndNumber(w, field, tagName(), ccName));
+    }
+
+    @Override
+    public void peek(PrintWriter w) {
+        // The caller provided default value is returned when the field is absent
+        peeker(w, field.getJavaType(), String.format(", %s _defaultValue", field.getJavaType()), "_defaultValue", () -> {
+            if (field.isEnumField()) {
+                w.format("    %s _value = %s;\n", field.getJavaType(), getNumber(field, "_valueIdx"));
+                w.format("    return _value != null ? _value : _defaultValue;\n");
+            } else {
+                w.format("    return %s;\n", getNumber(field, "_valueIdx"));
+            }
+        });
+    }
+
+    @Override
+    public void viewGetter(PrintWriter w) {
+        String name = Util.camelCase(field.isBoolField() ? "is" : "get", ccName);
+        String defaultValue = field.isDefaultValueSet() ? field.getDefaultValueAsString() : null;
+        viewGetter(w, field.getJavaType(), name, defaultValue, () -> {
+            String value = getNumber(field, "_idx");
+            if (field.isEnumField()) {
+                // Unknown enum values are ignored, as when parsing
+                w.format("        %s _value = %s;\n", field.getJavaType(), value);
+                w.format("        if (_value != null) {\n");
+                w.format("            return _value;\n");
+                w.format("        }\n");
+            } else {
+                w.format("        return %s;\n", value);
+            }
+        });
+    }
+
     @Override
     public void serialize(PrintWriter w) {
-        w.format("LightProtoCodec.writeVarInt(_b, %s);\n", tagName());
-        serializeNumber(w, field, ccName);
+        serializeTagAndNumber(w, field, tagName(), ccName);
     }
 
     @Override
@@ -185,7 +450,7 @@ public class LightProtoNumberField extends LightProtoField<Field<?>> {
         w.format("public %s %s(%s %s) {\n", enclosingType, Util.camelCase("set", field.getName()), field.getJavaType(), camelCase(field.getName()));
         w.format("    this.%s = %s;\n", camelCase(field.getName()), camelCase(field.getName()));
         w.format("    _bitField%d |= %s;\n", bitFieldIndex(), fieldMask());
-        w.format("    _cachedSize = -1;\n");
+        w.format("    _fieldModified(%d);\n", index);
         w.format("    return this;\n");
         w.format("}\n");
     }
@@ -32,16 +32,28 @@ public class LightProtoRepeatedBytesField extends LightProtoAbstractRepeated<Fie
 
     @Override
     public void declaration(PrintWriter w) {
-        w.format("private java.util.List<LightProtoCodec.BytesHolder> %s = null;\n", pluralName);
+        // Index and length of each item in the parsed buffer, the index is -1 for the added items, whose buffers are
+        // only allocated when needed
+        w.format("private int[] _%sIdx = null;\n", pluralName);
+        w.format("private int[] _%sLen = null;\n", pluralName);
+        w.format("private io.netty.buffer.ByteBuf[] %s = null;\n", pluralName);
         w.format("private int _%sCount = 0;\n", pluralName);
     }
 
     @Override
     public void parse(PrintWriter w) {
-        w.format("LightProtoCodec.BytesHolder _%sBh = _%sBytesHolder();\n", ccName, Util.camelCase("new", singularName));
-        w.format("_%sBh.len = LightProtoCodec.readVarInt(_buffer);\n", ccName);
-        w.format("_%sBh.idx = _buffer.readerIndex();\n", ccName);
-        w.format("_buffer.skipBytes(_%sBh.len);\n", ccName);
+        w.format("int _%sSlot = %s();\n", ccName, slotMethod());
+        w.format("_%sLen[_%sSlot] = LightProtoCodec.readVarInt(_buffer);\n", pluralName, ccName);
+        w.format("_%sIdx[_%sSlot] = _buffer.readerIndex();\n", pluralName, ccName);
+        w.format("_buffer.skipBytes(_%sLen[_%sSlot]);\n", pluralName, ccName);
+    }
+
+    @Override
+    public void parseAt(PrintWriter w) {
+        w.format("int _%sSlot = %s();\n", ccName, slotMethod());
+        getLengthAt(w, "_" + pluralName + "Len[_" + ccName + "Slot]", "_" + ccName + "Len");
+        w.format("_%sIdx[_%sSlot] = _idx - _base;\n", pluralName, ccName);
+        w.format("_idx += _%sLen[_%sSlot];\n", pluralName, ccName);
     }
 
     @Override
@@ -52,9 +64,9 @@ public class LightProtoRepeatedBytesField extends LightProtoAbstractRepeated<Fie
 
         w.format("public int %s(int idx) {\n", Util.camelCase("get", singularName, "size", "at"));
         w.format("    if (idx < 0 || idx >= _%sCount) {\n", pluralName);
-        w.format("        throw new IndexOutOfBoundsException(\"Index \" + idx + \" is out of the list size (\" + _%sCount + \") for field '%s'\");\n", pluralName, field.getName());
+        w.format("        throw LightProtoCodec.indexOutOfBounds(idx, _%sCount, \"%s\");\n", pluralName, field.getName());
         w.format("    }\n");
-        w.format("    return %s.get(idx).len;\n", pluralName);
+        w.format("    return _%sLen[idx];\n", pluralName);
         w.format("}\n");
 
 
@@ -67,28 +79,47 @@ public class LightProtoRepeatedBytesField extends LightProtoAbstractRepeated<Fie
 
         w.format("public io.netty.buffer.ByteBuf %s(int idx) {\n", Util.camelCase("get", singularName, "slice", "at"));
         w.format("    if (idx < 0 || idx >= _%sCount) {\n", pluralName);
-        w.format("        throw new IndexOutOfBoundsException(\"Index \" + idx + \" is out of the list size (\" + _%sCount + \") for field '%s'\");\n", pluralName, field.getName());
+        w.format("        throw LightProtoCodec.indexOutOfBounds(idx, _%sCount, \"%s\");\n", pluralName, field.getName());
         w.format("    }\n");
-        w.format("    LightProtoCodec.BytesHolder _bh = %s.get(idx);\n", pluralName);
-        w.format("    if (_bh.b == null) {\n");
-        w.format("        return _parsedBuffer.slice(_bh.idx, _bh.len);\n");
+        w.format("    if (_%sIdx[idx] != -1) {\n", pluralName);
+        w.format("        return _parsedBuffer.slice(_%sIdx[idx], _%sLen[idx]);\n", pluralName, pluralName);
         w.format("    } else {\n");
-        w.format("        return _bh.b.slice(0, _bh.len);\n");
+        w.format("        return %s[idx].slice(%s[idx].readerIndex(), _%sLen[idx]);\n", pluralName, pluralName, pluralName);
         w.format("    }\n");
         w.format("}\n");
     }
 
+    @Override
+    public void viewGetter(PrintWriter w) {
+        viewCountGetter(w);
+        viewItemGetter(w, "int", Util.camelCase("get", singularName, "size", "at"), () -> {
+            w.format("    return LightProtoCodec.getVarInt(_buffer, _idx);\n");
+        });
+        viewItemGetter(w, "io.netty.buffer.ByteBuf", Util.camelCase("get", singularName, "slice", "at"), () -> {
+            w.format("    return _buffer.slice(LightProtoCodec.skipVarInt(_buffer, _idx), LightProtoCodec.getVarInt(_buffer, _idx));\n");
+        });
+    }
+
+    @Override
+    public void editor(PrintWriter w) {
+        appender(w, singularName, "io.netty.buffer.ByteBuf", singularName + ".readableBytes()", "LightProtoCodec.computeVarIntSize(_len) + _len", () -> {
+            w.format("    _idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, _len);\n", tagName(), tagName());
+            w.format("    _b.setBytes(_idx, %s, %s.readerIndex(), _len);\n", singularName, singularName);
+            w.format("    _idx += _len;\n");
+        });
+    }
+
     @Override
     public void serialize(PrintWriter w) {
         w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
-        w.format("    LightProtoCodec.BytesHolder _bh = %s.get(i);\n", pluralName);
-        w.format("    LightProtoCodec.writeVarInt(_b, %s);\n", tagName());
-        w.format("    LightProtoCodec.writeVarInt(_b, _bh.len);\n");
-        w.format("    if (_bh.idx == -1) {\n");
-        w.format("        _bh.b.getBytes(0, _b, _bh.len);\n");
+        w.format("    int _len = _%sLen[i];\n", pluralName);
+        w.format("    _idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, _len);\n", tagName(), tagName());
+        w.format("    if (_%sIdx[i] == -1) {\n", pluralName);
+        w.format("        _b.setBytes(_idx, %s[i], %s[i].readerIndex(), _len);\n", pluralName, pluralName);
         w.format("    } else {\n");
-        w.format("        _parsedBuffer.getBytes(_bh.idx, _b, _bh.len);\n");
+        w.format("        _b.setBytes(_idx, _parsedBuffer, _%sIdx[i], _len);\n", pluralName);
         w.format("    }\n");
+        w.format("    _idx += _len;\n");
         w.format("}\n");
     }
 
@@ -99,30 +130,27 @@ public class LightProtoRepeatedBytesField extends LightProtoAbstractRepeated<Fie
         w.format("}\n");
 
         w.format("public void %s(io.netty.buffer.ByteBuf %s) {\n", Util.camelCase("add", singularName), singularName);
+        w.format("    int _slot = %s();\n", slotMethod());
+        w.format("    _fieldModified(%d);\n", index);
         w.format("    if (%s == null) {\n", pluralName);
-        w.format("        %s = new java.util.ArrayList<LightProtoCodec.BytesHolder>();\n", pluralName);
+        w.format("        %s = new io.netty.buffer.ByteBuf[_%sIdx.length];\n", pluralName, pluralName);
         w.format("    }\n");
-        w.format("    LightProtoCodec.BytesHolder _bh = _%sBytesHolder();\n", Util.camelCase("new", singularName));
-        w.format("    _cachedSize = -1;\n");
-        w.format("    _bh.b = %s;\n", singularName);
-        w.format("    _bh.idx = -1;\n");
-        w.format("    _bh.len = %s.readableBytes();\n", singularName);
+        w.format("    %s[_slot] = %s;\n", pluralName, singularName);
+        w.format("    _%sIdx[_slot] = -1;\n", pluralName);
+        w.format("    _%sLen[_slot] = %s.readableBytes();\n", pluralName, singularName);
         w.format("}\n");
 
-
-        w.format("private LightProtoCodec.BytesHolder _%sBytesHolder() {\n", Util.camelCase("new", singularName));
-        w.format("    if (%s == null) {\n", pluralName);
-        w.format("         %s = new java.util.ArrayList<LightProtoCodec.BytesHolder>();\n", pluralName);
-        w.format("    }\n");
-        w.format("    LightProtoCodec.BytesHolder _bh;\n");
-        w.format("    if (%s.size() == _%sCount) {\n", pluralName, pluralName);
-        w.format("        _bh = new LightProtoCodec.BytesHolder();\n");
-        w.format("        %s.add(_bh);\n", pluralName);
-        w.format("    } else {\n");
-        w.format("        _bh = %s.get(_%sCount);\n", pluralName, pluralName);
+        // The arrays share the same capacity, and the buffers past the count are always null
+        w.format("private int %s() {\n", slotMethod());
+        w.format("    if (_%sIdx == null || _%sIdx.length == _%sCount) {\n", pluralName, pluralName, pluralName);
+        w.format("        _%sIdx = LightProtoCodec.grow(_%sIdx, _%sCount + 1);\n", pluralName, pluralName, pluralName);
+        w.format("        _%sLen = LightProtoCodec.grow(_%sLen, _%sCount + 1);\n", pluralName, pluralName, pluralName);
+        w.format("        if (%s != null) {\n", pluralName);
+        w.format("            %s = java.util.Arrays.copyOf(%s, _%sIdx.length);\n", pluralName, pluralName, pluralName);
+        w.format("        }\n");
         w.format("    }\n");
-        w.format("    _%sCount++;\n", pluralName);
-        w.format("    return _bh;\n");
+        setNonEmpty(w);
+        w.format("    return _%sCount++;\n", pluralName);
         w.format("}\n");
     }
 
@@ -136,19 +164,16 @@ public class LightProtoRepeatedBytesField extends LightProtoAbstractRepeated<Fie
     @Override
     public void serializedSize(PrintWriter w) {
         w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
-        w.format("    LightProtoCodec.BytesHolder _bh = %s.get(i);\n", pluralName);
+        w.format("    int _len = _%sLen[i];\n", pluralName);
         w.format("    _size += %s_SIZE;\n", tagName());
-        w.format("    _size += LightProtoCodec.computeVarIntSize(_bh.len) + _bh.len;\n");
+        w.format("    _size += LightProtoCodec.computeVarIntSize(_len) + _len;\n");
         w.format("}\n");
     }
 
     @Override
     public void clear(PrintWriter w) {
-        w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
-        w.format("    LightProtoCodec.BytesHolder _bh = %s.get(i);\n", pluralName);
-        w.format("    _bh.b = null;\n");
-        w.format("    _bh.idx = -1;\n");
-        w.format("    _bh.len = -1;\n");
+        w.format("if (%s != null) {\n", pluralName);
+        w.format("    java.util.Arrays.fill(%s, 0, _%sCount, null);\n", pluralName, pluralName);
         w.format("}\n");
         w.format("_%sCount = 0;\n", pluralName);
     }
@@ -157,4 +182,8 @@ public class LightProtoRepeatedBytesField extends LightProtoAbstractRepeated<Fie
     protected String typeTag() {
         return "LightProtoCodec.WIRETYPE_LENGTH_DELIMITED";
     }
+
+    private String slotMethod() {
+        return "_" + Util.camelCase("new", singularName, "slot");
+    }
 }
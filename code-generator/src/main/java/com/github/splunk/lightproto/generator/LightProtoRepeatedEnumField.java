@@ -27,19 +27,47 @@ public class LightProtoRepeatedEnumField extends LightProtoRepeatedNumberField {
 
     @Override
     public void parse(PrintWriter w) {
+        w.format("int _%sIdx = _buffer.readerIndex();\n", ccName);
         w.format("%s _%s = %s;\n", field.getJavaType(), ccName, LightProtoNumberField.parseNumber(field));
         w.format("if (_%s != null) {\n", ccName);
-        w.format("   %s(_%s);\n", Util.camelCase("add", singularName), ccName);
+        w.format("   %s(_%s);\n", internalAdder(), ccName);
+        w.format("} else {\n");
+        LightProtoEnumField.addUnknownValue(w, tagName(), "_" + ccName + "Idx", "_buffer.readerIndex()", "");
+        w.format("}\n");
+    }
+
+    @Override
+    public void parseAt(PrintWriter w) {
+        w.format("int _%sIdx = _idx;\n", ccName);
+        LightProtoNumberField.getNumberAt(w, field, "_" + ccName);
+        w.format("if (_%s != null) {\n", ccName);
+        w.format("   %s(_%s);\n", internalAdder(), ccName);
+        w.format("} else {\n");
+        LightProtoEnumField.addUnknownValue(w, tagName(), "_" + ccName + "Idx", "_idx", " - _base");
         w.format("}\n");
     }
 
     public void parsePacked(PrintWriter w) {
+        // The values of a packed field have no tag of their own, the unknown ones are dropped
         w.format("int _%s = LightProtoCodec.readVarInt(_buffer);\n", Util.camelCase(singularName, "size"));
         w.format("int _%s = _buffer.readerIndex() + _%s;\n", Util.camelCase(singularName, "endIdx"), Util.camelCase(singularName, "size"));
         w.format("while (_buffer.readerIndex() < _%s) {\n", Util.camelCase(singularName, "endIdx"));
         w.format("    %s _%sPacked = %s;\n", field.getJavaType(), ccName, LightProtoNumberField.parseNumber(field));
         w.format("    if (_%sPacked != null) {\n", ccName);
-        w.format("        %s(_%sPacked);\n", Util.camelCase("add", singularName), ccName);
+        w.format("        %s(_%sPacked);\n", internalAdder(), ccName);
+        w.format("    }\n");
+        w.format("}\n");
+    }
+
+    @Override
+    public void parsePackedAt(PrintWriter w) {
+        String size = "_" + Util.camelCase(singularName, "size");
+        getLengthAt(w, "int " + size, size);
+        w.format("int _%s = _idx + %s;\n", Util.camelCase(singularName, "endIdx"), size);
+        w.format("while (_idx < _%s) {\n", Util.camelCase(singularName, "endIdx"));
+        LightProtoNumberField.getNumberAt(w, field, "_" + ccName + "Packed");
+        w.format("    if (_%sPacked != null) {\n", ccName);
+        w.format("        %s(_%sPacked);\n", internalAdder(), ccName);
         w.format("    }\n");
         w.format("}\n");
     }
@@ -24,15 +24,19 @@ public class LightProtoRepeatedMessageField extends LightProtoAbstractRepeated<M
     protected final String pluralName;
     protected final String singularName;
 
-    public LightProtoRepeatedMessageField(MessageField field, int index) {
+    private final boolean tableDrivenType;
+
+    public LightProtoRepeatedMessageField(MessageField field, int index, boolean tableDrivenType) {
         super(field, index);
         this.pluralName = Util.plural(ccName);
         this.singularName = Util.singular(ccName);
+        this.tableDrivenType = tableDrivenType;
     }
 
     @Override
     public void declaration(PrintWriter w) {
-        w.format("private java.util.List<%s> %s = null;\n", field.getJavaType(), pluralName);
+        // The items past the count are pooled instances, reused by the next additions
+        w.format("private %s[] %s = null;\n", field.getJavaType(), pluralName);
         w.format("private int _%sCount = 0;\n", pluralName);
     }
 
@@ -43,16 +47,29 @@ public class LightProtoRepeatedMessageField extends LightProtoAbstractRepeated<M
         w.format("}\n");
         w.format("public %s %s(int idx) {\n", field.getJavaType(), Util.camelCase("get", singularName, "at"));
         w.format("    if (idx < 0 || idx >= _%sCount) {\n", pluralName);
-        w.format("        throw new IndexOutOfBoundsException(\"Index \" + idx + \" is out of the list size (\" + _%sCount + \") for field '%s'\");\n", pluralName, field.getName());
+        w.format("        throw LightProtoCodec.indexOutOfBounds(idx, _%sCount, \"%s\");\n", pluralName, field.getName());
         w.format("    }\n");
-        w.format("    return %s.get(idx);\n", pluralName);
+        w.format("    return %s[idx];\n", pluralName);
         w.format("}\n");
 
         w.format("public java.util.List<%s> %s() {\n", field.getJavaType(), Util.camelCase("get", pluralName, "list"));
         w.format("    if (_%sCount == 0) {\n", pluralName);
         w.format("        return java.util.Collections.emptyList();\n");
         w.format("    } else {\n");
-        w.format("        return %s.subList(0, _%sCount);\n", pluralName, pluralName);
+        w.format("        return java.util.Arrays.asList(%s).subList(0, _%sCount);\n", pluralName, pluralName);
+        w.format("    }\n");
+        w.format("}\n");
+
+        forEach(w);
+    }
+
+    /**
+     * Generates the iteration over the items without allocating a list view.
+     */
+    protected void forEach(PrintWriter w) {
+        w.format("public void %s(java.util.function.Consumer<? super %s> _consumer) {\n", Util.camelCase("forEach", singularName), field.getJavaType());
+        w.format("    for (int i = 0; i < _%sCount; i++) {\n", pluralName);
+        w.format("        _consumer.accept(%s[i]);\n", pluralName);
         w.format("    }\n");
         w.format("}\n");
     }
@@ -60,19 +77,45 @@ public class LightProtoRepeatedMessageField extends LightProtoAbstractRepeated<M
     @Override
     public void parse(PrintWriter w) {
         w.format("int _%sSize = LightProtoCodec.readVarInt(_buffer);\n", ccName);
-        w.format("%s().parseFrom(_buffer, _%sSize);\n", Util.camelCase("add", singularName), ccName);
+        w.format("%s().parseFrom(_buffer, _%sSize);\n", internalAdder(), ccName);
+    }
+
+    @Override
+    public void parseAt(PrintWriter w) {
+        getLengthAt(w, "int _" + ccName + "Size", "_" + ccName + "Size");
+        if (tableDrivenType) {
+            // Parsed from the source buffer, at the index the cursor is shifted from
+            w.format("%s()._parseFrom(_source, _source, 0, _idx - _base, _%sSize);\n", internalAdder(), ccName);
+        } else {
+            w.format("%s()._parseFrom(_source, _buffer, _base, _idx - _base, _%sSize);\n", internalAdder(), ccName);
+        }
+        w.format("_idx += _%sSize;\n", ccName);
     }
 
     @Override
     public void serialize(PrintWriter w) {
         w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
-        w.format("    %s _item = %s.get(i);\n", field.getJavaType(), pluralName);
-        w.format("    LightProtoCodec.writeVarInt(_b, %s);\n", tagName());
-        w.format("    LightProtoCodec.writeVarInt(_b, _item.getSerializedSize());\n");
-        w.format("    _item.writeTo(_b);\n");
+        w.format("    %s _item = %s[i];\n", field.getJavaType(), pluralName);
+        w.format("    _idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, _item.getSerializedSize());\n", tagName(), tagName());
+        w.format("    _idx = _item._writeTo(_b, _idx);\n");
         w.format("}\n");
     }
 
+    @Override
+    public void viewGetter(PrintWriter w) {
+        // A single view of the nested message is re-pointed on the item of every access
+        String javaType = field.getJavaType();
+        String viewType = javaType + "." + javaType.substring(javaType.lastIndexOf('.') + 1) + "View";
+        w.format("private %s _%sView;\n", viewType, singularName);
+        viewCountGetter(w);
+        viewItemGetter(w, viewType, Util.camelCase("get", singularName, "at"), () -> {
+            w.format("    if (_%sView == null) {\n", singularName);
+            w.format("        _%sView = new %s();\n", singularName, viewType);
+            w.format("    }\n");
+            w.format("    return _%sView.wrap(_buffer, LightProtoCodec.skipVarInt(_buffer, _idx), LightProtoCodec.getVarInt(_buffer, _idx));\n", singularName);
+        });
+    }
+
     @Override
     public void copy(PrintWriter w) {
         w.format("for (int i = 0; i < _other.%s(); i++) {\n", Util.camelCase("get", pluralName, "count"));
@@ -83,14 +126,23 @@ public class LightProtoRepeatedMessageField extends LightProtoAbstractRepeated<M
     @Override
     public void setter(PrintWriter w, String enclosingType) {
         w.format("public %s %s() {\n", field.getJavaType(), Util.camelCase("add", singularName));
-        w.format("    if (%s == null) {\n", pluralName);
-        w.format("        %s = new java.util.ArrayList<%s>();\n", pluralName, field.getJavaType());
+        w.format("    _fieldModified(%d);\n", index);
+        w.format("    return %s();\n", internalAdder());
+        w.format("}\n");
+
+        w.format("private %s %s() {\n", field.getJavaType(), internalAdder());
+        w.format("    if (%s == null || %s.length == _%sCount) {\n", pluralName, pluralName, pluralName);
+        w.format("        %s = LightProtoCodec.grow(%s, _%sCount + 1, %s.class);\n", pluralName, pluralName, pluralName, field.getJavaType());
         w.format("    }\n");
-        w.format("    if (%s.size() == _%sCount) {\n", pluralName, pluralName);
-        w.format("        %s.add(new %s());\n", pluralName, field.getJavaType());
+        w.format("    %s _item = %s[_%sCount];\n", field.getJavaType(), pluralName, pluralName);
+        w.format("    if (_item == null) {\n");
+        w.format("        _item = new %s();\n", field.getJavaType());
+        w.format("        _item._setParent(this, %d);\n", index);
+        w.format("        %s[_%sCount] = _item;\n", pluralName, pluralName);
         w.format("    }\n");
-        w.format("    _cachedSize = -1;\n");
-        w.format("    return %s.get(_%sCount++);\n", pluralName, pluralName);
+        setNonEmpty(w);
+        w.format("    _%sCount++;\n", pluralName);
+        w.format("    return _item;\n");
         w.format("}\n");
 
 
@@ -109,7 +161,7 @@ public class LightProtoRepeatedMessageField extends LightProtoAbstractRepeated<M
         String tmpName = Util.camelCase("_msgSize", field.getName());
 
         w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
-        w.format("     %s _item = %s.get(i);\n", field.getJavaType(), pluralName);
+        w.format("     %s _item = %s[i];\n", field.getJavaType(), pluralName);
         w.format("     _size += %s_SIZE;\n", tagName());
         w.format("     int %s = _item.getSerializedSize();\n", tmpName);
         w.format("     _size += LightProtoCodec.computeVarIntSize(%s) + %s;\n", tmpName, tmpName);
@@ -119,7 +171,7 @@ public class LightProtoRepeatedMessageField extends LightProtoAbstractRepeated<M
     @Override
     public void clear(PrintWriter w) {
         w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
-        w.format("    %s.get(i).clear();\n", pluralName);
+        w.format("    %s[i].clear();\n", pluralName);
         w.format("}\n");
         w.format("_%sCount = 0;\n", pluralName);
     }
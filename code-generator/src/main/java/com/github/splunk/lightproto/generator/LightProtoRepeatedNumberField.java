@@ -34,54 +34,170 @@ public class LightProtoRepeatedNumberField extends LightProtoAbstractRepeated<Fi
     public void declaration(PrintWriter w) {
         w.format("private %s[] %s = null;\n", field.getJavaType(), pluralName);
         w.format("private int _%sCount = 0;\n", pluralName);
+        if (isPacked()) {
+            w.format("private int _%sPackedSize;\n", pluralName);
+        }
     }
 
     @Override
     public void parse(PrintWriter w) {
-        w.format("%s(%s);\n", Util.camelCase("add", singularName), LightProtoNumberField.parseNumber(field));
+        w.format("%s(%s);\n", internalAdder(), LightProtoNumberField.parseNumber(field));
     }
 
     public void parsePacked(PrintWriter w) {
         w.format("int _%s = LightProtoCodec.readVarInt(_buffer);\n", Util.camelCase(singularName, "size"));
         w.format("int _%s = _buffer.readerIndex() + _%s;\n", Util.camelCase(singularName, "endIdx"), Util.camelCase(singularName, "size"));
         w.format("while (_buffer.readerIndex() < _%s) {\n", Util.camelCase(singularName, "endIdx"));
-        w.format("%s(%s);\n", Util.camelCase("add", singularName), LightProtoNumberField.parseNumber(field));
+        w.format("%s(%s);\n", internalAdder(), LightProtoNumberField.parseNumber(field));
+        w.format("}\n");
+    }
+
+    @Override
+    public void parseAt(PrintWriter w) {
+        LightProtoNumberField.getNumberAt(w, field, "_" + ccName + "Value");
+        w.format("%s(_%sValue);\n", internalAdder(), ccName);
+    }
+
+    @Override
+    public void parsePackedAt(PrintWriter w) {
+        String size = "_" + Util.camelCase(singularName, "size");
+        getLengthAt(w, "int " + size, size);
+        w.format("int _%s = _idx + %s;\n", Util.camelCase(singularName, "endIdx"), size);
+        w.format("while (_idx < _%s) {\n", Util.camelCase(singularName, "endIdx"));
+        LightProtoNumberField.getNumberAt(w, field, "_" + ccName + "Packed");
+        w.format("%s(_%sPacked);\n", internalAdder(), ccName);
         w.format("}\n");
     }
 
+    @Override
+    public boolean isNumber() {
+        return true;
+    }
+
+    @Override
+    public String tableKind() {
+        String kind = LightProtoNumberField.tableKind(field) + " | LightProtoCodec.FLAG_REPEATED";
+        return isPacked() ? kind + " | LightProtoCodec.FLAG_PACKED" : kind;
+    }
+
+    @Override
+    public void tableSetter(PrintWriter w) {
+        String value = LightProtoNumberField.fromRaw(field, "_value");
+        if (field.isEnumField()) {
+            w.format("%s _%s = %s;\n", field.getJavaType(), ccName, value);
+            w.format("if (_%s == null) {\n", ccName);
+            w.format("    return false;\n");
+            w.format("}\n");
+            w.format("%s(_%s);\n", internalAdder(), ccName);
+        } else {
+            w.format("%s(%s);\n", internalAdder(), value);
+        }
+    }
+
+    @Override
+    public void tableGetter(PrintWriter w) {
+        w.format("return %s;\n", LightProtoNumberField.toRaw(field, pluralName + "[_index]"));
+    }
+
+    @Override
+    public void tableCount(PrintWriter w) {
+        w.format("return _%sCount;\n", pluralName);
+    }
+
     @Override
     public void getter(PrintWriter w) {
         w.format("private static final int %s_PACKED = (%s << LightProtoCodec.TAG_TYPE_BITS) | LightProtoCodec.WIRETYPE_LENGTH_DELIMITED;\n", tagName(), fieldNumber());
+        w.format("private static final int %s_PACKED_SIZE = LightProtoCodec.computeVarUIntSize(%s_PACKED);\n", tagName(), tagName());
+        w.format("private static final long %s_PACKED_BYTES = LightProtoCodec.encodeTag(%s_PACKED);\n", tagName(), tagName());
         w.format("public int %s() {\n", Util.camelCase("get", pluralName, "count"));
         w.format("    return _%sCount;\n", pluralName);
         w.format("}\n");
         w.format("public %s %s(int idx) {\n", field.getJavaType(), Util.camelCase("get", singularName, "at"));
         w.format("    if (idx < 0 || idx >= _%sCount) {\n", pluralName);
-        w.format("        throw new IndexOutOfBoundsException(\"Index \" + idx + \" is out of the list size (\" + _%sCount + \") for field '%s'\");\n", pluralName, field.getName());
+        w.format("        throw LightProtoCodec.indexOutOfBounds(idx, _%sCount, \"%s\");\n", pluralName, field.getName());
         w.format("    }\n");
         w.format("    return %s[idx];\n", pluralName);
         w.format("}\n");
     }
 
+    /**
+     * Records the items of the field, including the ones of its packed occurrences, which parsers accept even if the
+     * field is not declared packed. As when parsing, the unknown enum values are not items.
+     */
+    @Override
+    public void viewScan(PrintWriter w) {
+        if (!field.isEnumField()) {
+            w.format("case %s:\n", tagName());
+            w.format("case %s_PACKED:\n", tagName());
+            w.format("    _addNumberItemIdxs(%d, _tag, _idx, _fieldEndIdx, %d);\n", index, packedItemSize());
+            w.format("    break;\n");
+            return;
+        }
+
+        String packedIdx = "LightProtoCodec.skipVarInt(_buffer, LightProtoCodec.skipVarInt(_buffer, _idx))";
+        String itemIdx = "_" + Util.camelCase(ccName, "item", "idx");
+        w.format("case %s:\n", tagName());
+        w.format("    int %s = LightProtoCodec.skipVarInt(_buffer, _idx);\n", itemIdx);
+        viewAddEnumItem(w, "    ", itemIdx);
+        w.format("    break;\n");
+        w.format("case %s_PACKED:\n", tagName());
+        w.format("    for (int %sPacked = %s; %sPacked < _fieldEndIdx; %sPacked = LightProtoCodec.skipVarInt(_buffer, %sPacked)) {\n",
+                itemIdx, packedIdx, itemIdx, itemIdx, itemIdx);
+        viewAddEnumItem(w, "        ", itemIdx + "Packed");
+        w.format("    }\n");
+        w.format("    break;\n");
+    }
+
+    private void viewAddEnumItem(PrintWriter w, String indent, String itemIdx) {
+        w.format("%sif (%s != null) {\n", indent, LightProtoNumberField.getNumber(field, itemIdx));
+        w.format("%s    _addItemIdx(%d, %s);\n", indent, index, itemIdx);
+        w.format("%s}\n", indent);
+    }
+
+    /**
+     * Returns the size of the packed items, or 0 for the varints.
+     */
+    private int packedItemSize() {
+        switch (typeTag()) {
+            case "LightProtoCodec.WIRETYPE_FIXED32":
+                return 4;
+            case "LightProtoCodec.WIRETYPE_FIXED64":
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public void viewGetter(PrintWriter w) {
+        viewCountGetter(w);
+        viewItemGetter(w, field.getJavaType(), Util.camelCase("get", singularName, "at"), () -> {
+            w.format("    return %s;\n", LightProtoNumberField.getNumber(field, "_idx"));
+        });
+    }
+
+    @Override
+    public void editor(PrintWriter w) {
+        // Appended items are not packed, which parsers accept for packed fields too
+        appender(w, singularName, field.getJavaType(), null, LightProtoNumberField.serializedSizeOfNumber(field, singularName),
+                () -> LightProtoNumberField.serializeTagAndNumber(w, field, tagName(), singularName));
+    }
+
     @Override
     public void serialize(PrintWriter w) {
-        if (field.getOption("packed") == Boolean.TRUE) {
-            w.format("    LightProtoCodec.writeVarInt(_b, %s_PACKED);\n", tagName());
-            w.format("    int _%sSize = 0;\n", pluralName);
-            w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
-            w.format("    %s _item = %s[i];\n", field.getJavaType(), pluralName);
-            w.format("    _%sSize += %s;\n", pluralName, LightProtoNumberField.serializedSizeOfNumber(field, "_item"));
-            w.format("}\n");
-            w.format("    LightProtoCodec.writeVarInt(_b, _%sSize);\n", pluralName);
-            w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
-            w.format("    %s _item = %s[i];\n", field.getJavaType(), pluralName);
+        if (isPacked()) {
+            // The payload size was measured by getSerializedSize(), which writeTo() always calls first
+            w.format("if (_%sCount > 0) {\n", pluralName);
+            w.format("    _idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_PACKED_BYTES, %s_PACKED_SIZE, _%sPackedSize);\n", tagName(), tagName(), pluralName);
+            w.format("    for (int i = 0; i < _%sCount; i++) {\n", pluralName);
+            w.format("        %s _item = %s[i];\n", field.getJavaType(), pluralName);
             LightProtoNumberField.serializeNumber(w, field, "_item");
+            w.format("    }\n");
             w.format("}\n");
         } else {
             w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
             w.format("    %s _item = %s[i];\n", field.getJavaType(), pluralName);
-            w.format("    LightProtoCodec.writeVarInt(_b, %s);\n", tagName());
-            LightProtoNumberField.serializeNumber(w, field, "_item");
+            LightProtoNumberField.serializeTagAndNumber(w, field, tagName(), "_item");
             w.format("}\n");
         }
     }
@@ -89,13 +205,19 @@ public class LightProtoRepeatedNumberField extends LightProtoAbstractRepeated<Fi
     @Override
     public void setter(PrintWriter w, String enclosingType) {
         w.format("public void %s(%s %s) {\n", Util.camelCase("add", singularName), field.getJavaType(), singularName);
-        w.format("    if (%s == null) {\n", pluralName);
-        w.format("        %s = new %s[4];\n", pluralName, field.getJavaType());
-        w.format("    }\n");
-        w.format("    if (%s.length == _%sCount) {\n", pluralName, pluralName);
-        w.format("        %s = java.util.Arrays.copyOf(%s, _%sCount * 2);\n", pluralName, pluralName, pluralName);
+        w.format("    _fieldModified(%d);\n", index);
+        w.format("    %s(%s);\n", internalAdder(), singularName);
+        w.format("}\n");
+
+        w.format("private void %s(%s %s) {\n", internalAdder(), field.getJavaType(), singularName);
+        w.format("    if (%s == null || %s.length == _%sCount) {\n", pluralName, pluralName, pluralName);
+        if (field.isEnumField()) {
+            w.format("        %s = LightProtoCodec.grow(%s, _%sCount + 1, %s.class);\n", pluralName, pluralName, pluralName, field.getJavaType());
+        } else {
+            w.format("        %s = LightProtoCodec.grow(%s, _%sCount + 1);\n", pluralName, pluralName, pluralName);
+        }
         w.format("    }\n");
-        w.format("    _cachedSize = -1;\n");
+        setNonEmpty(w);
         w.format("    %s[_%sCount++] = %s;\n", pluralName, pluralName, singularName);
         w.format("}\n");
     }
@@ -110,15 +232,23 @@ public class LightProtoRepeatedNumberField extends LightProtoAbstractRepeated<Fi
     @Override
     public void serializedSize(PrintWriter w) {
 
-        if (field.getOption("packed") == Boolean.TRUE) {
-            w.format("    _size += %s_SIZE;\n", tagName());
-            w.format("    int _%sSize = 0;\n", pluralName);
-            w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
-            w.format("    %s _item = %s[i];\n", field.getJavaType(), pluralName);
-            w.format("    _%sSize += %s;\n", pluralName, LightProtoNumberField.serializedSizeOfNumber(field, "_item"));
-            w.format("}\n");
+        if (isPacked()) {
+            String itemSize = LightProtoNumberField.serializedSizeOfNumber(field, "_item");
+            w.format("if (_%sCount > 0) {\n", pluralName);
+            if (itemSize.chars().allMatch(Character::isDigit)) {
+                w.format("    int _%sSize = _%sCount * %s;\n", pluralName, pluralName, itemSize);
+            } else {
+                w.format("    int _%sSize = 0;\n", pluralName);
+                w.format("    for (int i = 0; i < _%sCount; i++) {\n", pluralName);
+                w.format("        %s _item = %s[i];\n", field.getJavaType(), pluralName);
+                w.format("        _%sSize += %s;\n", pluralName, itemSize);
+                w.format("    }\n");
+            }
+            w.format("    _%sPackedSize = _%sSize;\n", pluralName, pluralName);
+            w.format("    _size += %s_PACKED_SIZE;\n", tagName());
             w.format("    _size += LightProtoCodec.computeVarIntSize(_%sSize);\n", pluralName);
             w.format("    _size += _%sSize;\n", pluralName);
+            w.format("}\n");
         } else {
             w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
             w.format("    %s _item = %s[i];\n", field.getJavaType(), pluralName);
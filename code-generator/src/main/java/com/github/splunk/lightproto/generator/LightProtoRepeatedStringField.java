@@ -32,16 +32,28 @@ public class LightProtoRepeatedStringField extends LightProtoAbstractRepeated<Fi
 
     @Override
     public void declaration(PrintWriter w) {
-        w.format("private java.util.List<LightProtoCodec.StringHolder> %s = null;\n", pluralName);
+        // Index and length of each item in the parsed buffer, the index is -1 for the added items. The strings are
+        // only allocated for the added items and the decoded ones.
+        w.format("private int[] _%sIdx = null;\n", pluralName);
+        w.format("private int[] _%sLen = null;\n", pluralName);
+        w.format("private String[] %s = null;\n", pluralName);
         w.format("private int _%sCount = 0;\n", pluralName);
     }
 
     @Override
     public void parse(PrintWriter w) {
-        w.format("LightProtoCodec.StringHolder _%sSh = _%sStringHolder();\n", ccName, Util.camelCase("new", singularName));
-        w.format("_%sSh.len = LightProtoCodec.readVarInt(_buffer);\n", ccName);
-        w.format("_%sSh.idx = _buffer.readerIndex();\n", ccName);
-        w.format("_buffer.skipBytes(_%sSh.len);\n", ccName);
+        w.format("int _%sSlot = %s();\n", ccName, slotMethod());
+        w.format("_%sLen[_%sSlot] = LightProtoCodec.readVarInt(_buffer);\n", pluralName, ccName);
+        w.format("_%sIdx[_%sSlot] = _buffer.readerIndex();\n", pluralName, ccName);
+        w.format("_buffer.skipBytes(_%sLen[_%sSlot]);\n", pluralName, ccName);
+    }
+
+    @Override
+    public void parseAt(PrintWriter w) {
+        w.format("int _%sSlot = %s();\n", ccName, slotMethod());
+        getLengthAt(w, "_" + pluralName + "Len[_" + ccName + "Slot]", "_" + ccName + "Len");
+        w.format("_%sIdx[_%sSlot] = _idx - _base;\n", pluralName, ccName);
+        w.format("_idx += _%sLen[_%sSlot];\n", pluralName, ccName);
     }
 
     @Override
@@ -51,13 +63,21 @@ public class LightProtoRepeatedStringField extends LightProtoAbstractRepeated<Fi
         w.format("}\n");
         w.format("public %s %s(int idx) {\n", field.getJavaType(), Util.camelCase("get", singularName, "at"));
         w.format("    if (idx < 0 || idx >= _%sCount) {\n", pluralName);
-        w.format("        throw new IndexOutOfBoundsException(\"Index \" + idx + \" is out of the list size (\" + _%sCount + \") for field '%s'\");\n", pluralName, field.getName());
+        w.format("        throw LightProtoCodec.indexOutOfBounds(idx, _%sCount, \"%s\");\n", pluralName, field.getName());
         w.format("    }\n");
-        w.format("    LightProtoCodec.StringHolder _sh = %s.get(idx);\n", pluralName);
-        w.format("    if (_sh.s == null) {\n");
-        w.format("        _sh.s = LightProtoCodec.readString(_parsedBuffer, _sh.idx, _sh.len);\n");
+        w.format("    if (%s == null || %s[idx] == null) {\n", pluralName, pluralName);
+        w.format("        return %s(idx);\n", decodeMethod());
+        w.format("    }\n");
+        w.format("    return %s[idx];\n", pluralName);
+        w.format("}\n");
+
+        // Decoding on the first access is kept out of the getter
+        w.format("private String %s(int idx) {\n", decodeMethod());
+        w.format("    if (%s == null) {\n", pluralName);
+        w.format("        %s = new String[_%sIdx.length];\n", pluralName, pluralName);
         w.format("    }\n");
-        w.format("    return _sh.s;\n");
+        w.format("    %s[idx] = LightProtoCodec.readString(_parsedBuffer, _%sIdx[idx], _%sLen[idx]);\n", pluralName, pluralName, pluralName);
+        w.format("    return %s[idx];\n", pluralName);
         w.format("}\n");
 
         w.format("public java.util.List<String> %s() {\n", Util.camelCase("get", pluralName, "list"));
@@ -73,20 +93,36 @@ public class LightProtoRepeatedStringField extends LightProtoAbstractRepeated<Fi
         w.format("}\n");
     }
 
+    @Override
+    public void editor(PrintWriter w) {
+        appender(w, singularName, "String", "LightProtoCodec.computeStringUTF8Size(" + singularName + ")", "LightProtoCodec.computeVarIntSize(_len) + _len", () -> {
+            w.format("    _idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, _len);\n", tagName(), tagName());
+            w.format("    _idx = LightProtoCodec.setString(_b, _idx, %s, _len);\n", singularName);
+        });
+    }
+
     @Override
     public void serialize(PrintWriter w) {
         w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
-        w.format("    LightProtoCodec.StringHolder _sh = %s.get(i);\n", pluralName);
-        w.format("    LightProtoCodec.writeVarInt(_b, %s);\n", tagName());
-        w.format("    LightProtoCodec.writeVarInt(_b, _sh.len);\n");
-        w.format("    if (_sh.idx == -1) {\n");
-        w.format("         LightProtoCodec.writeString(_b, _sh.s, _sh.len);\n");
+        w.format("    int _len = _%sLen[i];\n", pluralName);
+        w.format("    _idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, _len);\n", tagName(), tagName());
+        w.format("    if (_%sIdx[i] == -1) {\n", pluralName);
+        w.format("        LightProtoCodec.setString(_b, _idx, %s[i], _len);\n", pluralName);
         w.format("    } else {\n");
-        w.format("        _parsedBuffer.getBytes(_sh.idx, _b, _sh.len);\n");
+        w.format("        _b.setBytes(_idx, _parsedBuffer, _%sIdx[i], _len);\n", pluralName);
         w.format("    }\n");
+        w.format("    _idx += _len;\n");
         w.format("}\n");
     }
 
+    @Override
+    public void viewGetter(PrintWriter w) {
+        viewCountGetter(w);
+        viewItemGetter(w, "String", Util.camelCase("get", singularName, "at"), () -> {
+            w.format("    return LightProtoCodec.readString(_buffer, LightProtoCodec.skipVarInt(_buffer, _idx), LightProtoCodec.getVarInt(_buffer, _idx));\n");
+        });
+    }
+
     @Override
     public void copy(PrintWriter w) {
         w.format("for (int i = 0; i < _other.%s(); i++) {\n", Util.camelCase("get", pluralName, "count"));
@@ -97,14 +133,14 @@ public class LightProtoRepeatedStringField extends LightProtoAbstractRepeated<Fi
     @Override
     public void setter(PrintWriter w, String enclosingType) {
         w.format("public void %s(String %s) {\n", Util.camelCase("add", singularName), singularName);
+        w.format("    int _slot = %s();\n", slotMethod());
+        w.format("    _fieldModified(%d);\n", index);
         w.format("    if (%s == null) {\n", pluralName);
-        w.format("        %s = new java.util.ArrayList<LightProtoCodec.StringHolder>();\n", pluralName);
+        w.format("        %s = new String[_%sIdx.length];\n", pluralName, pluralName);
         w.format("    }\n");
-        w.format("    LightProtoCodec.StringHolder _sh = _%sStringHolder();\n", Util.camelCase("new", singularName));
-        w.format("    _cachedSize = -1;\n");
-        w.format("    _sh.s = %s;\n", singularName);
-        w.format("    _sh.idx = -1;\n");
-        w.format("    _sh.len = LightProtoCodec.computeStringUTF8Size(_sh.s);\n");
+        w.format("    %s[_slot] = %s;\n", pluralName, singularName);
+        w.format("    _%sIdx[_slot] = -1;\n", pluralName);
+        w.format("    _%sLen[_slot] = LightProtoCodec.computeStringUTF8Size(%s);\n", pluralName, singularName);
         w.format("}\n");
 
         w.format("public %s %s(Iterable<String> %s) {\n", enclosingType, Util.camelCase("addAll", pluralName), pluralName);
@@ -114,39 +150,33 @@ public class LightProtoRepeatedStringField extends LightProtoAbstractRepeated<Fi
         w.format("    return this;\n");
         w.format("}\n");
 
-
-        w.format("private LightProtoCodec.StringHolder _%sStringHolder() {\n", Util.camelCase("new", singularName));
-        w.format("    if (%s == null) {\n", pluralName);
-        w.format("         %s = new java.util.ArrayList<LightProtoCodec.StringHolder>();\n", pluralName);
-        w.format("    }\n");
-        w.format("    LightProtoCodec.StringHolder _sh;\n");
-        w.format("    if (%s.size() == _%sCount) {\n", pluralName, pluralName);
-        w.format("        _sh = new LightProtoCodec.StringHolder();\n");
-        w.format("        %s.add(_sh);\n", pluralName);
-        w.format("    } else {\n");
-        w.format("        _sh = %s.get(_%sCount);\n", pluralName, pluralName);
+        // The arrays share the same capacity, and the strings past the count are always null
+        w.format("private int %s() {\n", slotMethod());
+        w.format("    if (_%sIdx == null || _%sIdx.length == _%sCount) {\n", pluralName, pluralName, pluralName);
+        w.format("        _%sIdx = LightProtoCodec.grow(_%sIdx, _%sCount + 1);\n", pluralName, pluralName, pluralName);
+        w.format("        _%sLen = LightProtoCodec.grow(_%sLen, _%sCount + 1);\n", pluralName, pluralName, pluralName);
+        w.format("        if (%s != null) {\n", pluralName);
+        w.format("            %s = java.util.Arrays.copyOf(%s, _%sIdx.length);\n", pluralName, pluralName, pluralName);
+        w.format("        }\n");
         w.format("    }\n");
-        w.format("    _%sCount++;\n", pluralName);
-        w.format("    return _sh;\n");
+        setNonEmpty(w);
+        w.format("    return _%sCount++;\n", pluralName);
         w.format("}\n");
     }
 
     @Override
     public void serializedSize(PrintWriter w) {
         w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
-        w.format("    LightProtoCodec.StringHolder _sh = %s.get(i);\n", pluralName);
+        w.format("    int _len = _%sLen[i];\n", pluralName);
         w.format("    _size += %s_SIZE;\n", tagName());
-        w.format("    _size += LightProtoCodec.computeVarIntSize(_sh.len) + _sh.len;\n");
+        w.format("    _size += LightProtoCodec.computeVarIntSize(_len) + _len;\n");
         w.format("}\n");
     }
 
     @Override
     public void clear(PrintWriter w) {
-        w.format("for (int i = 0; i < _%sCount; i++) {\n", pluralName);
-        w.format("    LightProtoCodec.StringHolder _sh = %s.get(i);\n", pluralName);
-        w.format("    _sh.s = null;\n");
-        w.format("    _sh.idx = -1;\n");
-        w.format("    _sh.len = -1;\n");
+        w.format("if (%s != null) {\n", pluralName);
+        w.format("    java.util.Arrays.fill(%s, 0, _%sCount, null);\n", pluralName, pluralName);
         w.format("}\n");
         w.format("_%sCount = 0;\n", pluralName);
     }
@@ -155,4 +185,12 @@ public class LightProtoRepeatedStringField extends LightProtoAbstractRepeated<Fi
     protected String typeTag() {
         return "LightProtoCodec.WIRETYPE_LENGTH_DELIMITED";
     }
+
+    private String slotMethod() {
+        return "_" + Util.camelCase("new", singularName, "slot");
+    }
+
+    private String decodeMethod() {
+        return "_" + Util.camelCase("read", singularName, "at");
+    }
 }
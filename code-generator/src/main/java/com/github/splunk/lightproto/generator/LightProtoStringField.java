@@ -45,7 +45,7 @@ public class LightProtoStringField extends LightProtoField<Field.String> {
         w.format("    _bitField%d |= %s;\n", bitFieldIndex(), fieldMask());
         w.format("    _%sBufferIdx = -1;\n", ccName);
         w.format("    _%sBufferLen = LightProtoCodec.computeStringUTF8Size(%s);\n", ccName, ccName);
-        w.format("    _cachedSize = -1;\n");
+        w.format("    _fieldModified(%d);\n", index);
         w.format("    return this;\n");
         w.format("}\n");
     }
@@ -60,14 +60,20 @@ public class LightProtoStringField extends LightProtoField<Field.String> {
         w.format("public %s %s() {\n", field.getJavaType(), Util.camelCase("get", field.getName()));
         if (!field.isDefaultValueSet()) {
             w.format("    if (!%s()) {\n", Util.camelCase("has", ccName));
-            w.format("        throw new IllegalStateException(\"Field '%s' is not set\");\n", field.getName());
+            w.format("        throw LightProtoCodec.fieldNotSet(\"%s\");\n", field.getName());
             w.format("    }\n");
         }
         w.format("    if (%s == null) {\n", camelCase(field.getName()));
-        w.format("        %s = LightProtoCodec.readString(_parsedBuffer, _%sBufferIdx, _%sBufferLen);\n", ccName, ccName, ccName);
+        w.format("        return %s();\n", decodeMethod());
         w.format("    }\n");
         w.format("    return %s;\n", camelCase(field.getName()));
         w.format("}\n");
+
+        // Decoding on the first access is kept out of the getter
+        w.format("private String %s() {\n", decodeMethod());
+        w.format("    %s = LightProtoCodec.readString(_parsedBuffer, _%sBufferIdx, _%sBufferLen);\n", ccName, ccName, ccName);
+        w.format("    return %s;\n", ccName);
+        w.format("}\n");
     }
 
     @Override
@@ -84,15 +90,39 @@ public class LightProtoStringField extends LightProtoField<Field.String> {
         w.format("_size += _%sBufferLen;\n", ccName);
     }
 
+    @Override
+    public void editor(PrintWriter w) {
+        appender(w, ccName, "String", "LightProtoCodec.computeStringUTF8Size(" + ccName + ")", "LightProtoCodec.computeVarIntSize(_len) + _len", () -> {
+            w.format("    _idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, _len);\n", tagName(), tagName());
+            w.format("    _idx = LightProtoCodec.setString(_b, _idx, %s, _len);\n", ccName);
+        });
+    }
+
+    @Override
+    public void peek(PrintWriter w) {
+        peeker(w, "String", "", "null", () -> {
+            w.format("    int _len = LightProtoCodec.getVarInt(_buffer, _valueIdx);\n");
+            w.format("    return LightProtoCodec.readString(_buffer, _valueIdx + LightProtoCodec.computeVarUIntSize(_len), _len);\n");
+        });
+    }
+
+    @Override
+    public void viewGetter(PrintWriter w) {
+        String defaultValue = field.isDefaultValueSet() ? "\"" + field.getDefaultValue() + "\"" : null;
+        viewGetter(w, "String", Util.camelCase("get", ccName), defaultValue, () -> {
+            w.format("        return LightProtoCodec.readString(_buffer, LightProtoCodec.skipVarInt(_buffer, _idx), LightProtoCodec.getVarInt(_buffer, _idx));\n");
+        });
+    }
+
     @Override
     public void serialize(PrintWriter w) {
-        w.format("LightProtoCodec.writeVarInt(_b, %s);\n", tagName());
-        w.format("LightProtoCodec.writeVarInt(_b, _%sBufferLen);\n", ccName);
+        w.format("_idx = LightProtoCodec.setTagAndVarInt(_b, _idx, %s_BYTES, %s_SIZE, _%sBufferLen);\n", tagName(), tagName(), ccName);
         w.format("if (_%sBufferIdx == -1) {\n", ccName);
-        w.format("    LightProtoCodec.writeString(_b, %s, _%sBufferLen);\n", ccName, ccName);
+        w.format("    LightProtoCodec.setString(_b, _idx, %s, _%sBufferLen);\n", ccName, ccName);
         w.format("} else {\n");
-        w.format("    _parsedBuffer.getBytes(_%sBufferIdx, _b, _%sBufferLen);\n", ccName, ccName);
+        w.format("    _b.setBytes(_idx, _parsedBuffer, _%sBufferIdx, _%sBufferLen);\n", ccName, ccName);
         w.format("}\n");
+        w.format("_idx += _%sBufferLen;\n", ccName);
     }
 
     @Override
@@ -102,8 +132,19 @@ public class LightProtoStringField extends LightProtoField<Field.String> {
         w.format("_buffer.skipBytes(_%sBufferLen);\n", ccName);
     }
 
+    @Override
+    public void parseAt(PrintWriter w) {
+        getLengthAt(w, "_" + ccName + "BufferLen", "_" + ccName + "BufferLen");
+        w.format("_%sBufferIdx = _idx - _base;\n", ccName);
+        w.format("_idx += _%sBufferLen;\n", ccName);
+    }
+
     @Override
     protected String typeTag() {
         return "LightProtoCodec.WIRETYPE_LENGTH_DELIMITED";
     }
+
+    private String decodeMethod() {
+        return "_" + Util.camelCase("read", ccName);
+    }
 }
@@ -18,6 +18,9 @@ package com.github.splunk.lightproto.generator;
 import org.jibx.schema.codegen.extend.DefaultNameConverter;
 import org.jibx.schema.codegen.extend.NameConverter;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import static com.google.common.base.CaseFormat.LOWER_CAMEL;
 import static com.google.common.base.CaseFormat.LOWER_UNDERSCORE;
 
@@ -73,4 +76,19 @@ public class Util {
     public static String singular(String s) {
         return nameTools.depluralize(s);
     }
+
+    private static final Pattern TOKEN = Pattern.compile("\"(?:[^\"\\\\]|\\\\.)*\"|[A-Za-z_$][\\w$]*|\\d[\\w.]*|[-+*/%&|^!~<>=?:]+");
+
+    /**
+     * Estimates the bytecode size of a piece of generated code, from its number of tokens. On the generated messages,
+     * each token compiles to about 2 bytes of bytecode.
+     */
+    public static int estimateBytecodeSize(String code) {
+        Matcher m = TOKEN.matcher(code);
+        int tokens = 0;
+        while (m.find()) {
+            tokens++;
+        }
+        return tokens * 2;
+    }
 }
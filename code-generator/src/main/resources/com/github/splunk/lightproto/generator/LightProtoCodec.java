@@ -18,7 +18,9 @@ package com.github.splunk.lightproto.generator;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 
+import java.lang.reflect.Array;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 class LightProtoCodec {
     static final int TAG_TYPE_MASK = 7;
@@ -29,6 +31,7 @@ class LightProtoCodec {
     static final int WIRETYPE_START_GROUP = 3;
     static final int WIRETYPE_END_GROUP = 4;
     static final int WIRETYPE_FIXED32 = 5;
+    private static final long VARINT_CONTINUATION_BITS = 0x8080808080808080L;
     private LightProtoCodec() {
     }
 
@@ -49,7 +52,8 @@ class LightProtoCodec {
     }
 
     static void writeSignedVarInt(ByteBuf b, int n) {
-        writeVarInt(b, encodeZigZag32(n));
+        // The zig-zag encoded value is unsigned and never needs more than 5 bytes
+        _writeVarInt(b, encodeZigZag32(n));
     }
 
     static int readSignedVarInt(ByteBuf b) {
@@ -77,29 +81,226 @@ class LightProtoCodec {
     }
 
     private static void _writeVarInt(ByteBuf b, int n) {
-        while (true) {
-            if ((n & ~0x7F) == 0) {
-                b.writeByte(n);
-                return;
-            } else {
-                b.writeByte((n & 0x7F) | 0x80);
-                n >>>= 7;
+        if ((n & ~0x7F) == 0) {
+            b.writeByte(n);
+        } else if (b.hasArray() || b.hasMemoryAddress()) {
+            int size = computeVarUIntSize(n);
+            writeRawLittleEndian(b, spreadVarInt(n & 0xFFFFFFFFL) | continuationBits(size), size);
+        } else {
+            while (true) {
+                if ((n & ~0x7F) == 0) {
+                    b.writeByte(n);
+                    return;
+                } else {
+                    b.writeByte((n & 0x7F) | 0x80);
+                    n >>>= 7;
+                }
             }
         }
     }
 
     static void writeVarInt64(ByteBuf b, long value) {
-        while (true) {
-            if ((value & ~0x7FL) == 0) {
-                b.writeByte((int) value);
-                return;
-            } else {
-                b.writeByte(((int) value & 0x7F) | 0x80);
-                value >>>= 7;
+        if ((value & ~0x7FL) == 0) {
+            b.writeByte((int) value);
+        } else if (b.hasArray() || b.hasMemoryAddress()) {
+            int size = computeVarInt64Size(value);
+            if (size > 8) {
+                // The first 8 bytes are carrying the lower 56 bits, the 1 or 2 remaining bytes are written after
+                writeRawLittleEndian(b, spreadVarInt(value) | VARINT_CONTINUATION_BITS, 8);
+                value >>>= 56;
+                size -= 8;
+            }
+            writeRawLittleEndian(b, spreadVarInt(value) | continuationBits(size), size);
+        } else {
+            while (true) {
+                if ((value & ~0x7FL) == 0) {
+                    b.writeByte((int) value);
+                    return;
+                } else {
+                    b.writeByte(((int) value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
             }
         }
     }
 
+    /**
+     * Splits the lower 56 bits of the value in 8 groups of 7 bits, one per byte (little-endian).
+     */
+    private static long spreadVarInt(long value) {
+        value = (value & 0x000000000FFFFFFFL) | ((value & 0x00FFFFFFF0000000L) << 4);
+        value = (value & 0x00003FFF00003FFFL) | ((value & 0x0FFFC0000FFFC000L) << 2);
+        return (value & 0x007F007F007F007FL) | ((value & 0x3F803F803F803F80L) << 1);
+    }
+
+    /**
+     * Continuation bits for a varint of the given size, set on every byte but the last one.
+     */
+    private static long continuationBits(int size) {
+        return VARINT_CONTINUATION_BITS & ((1L << ((size - 1) << 3)) - 1);
+    }
+
+    private static void writeRawLittleEndian(ByteBuf b, long bytes, int size) {
+        b.ensureWritable(size);
+        b.writerIndex(setRawLittleEndian(b, b.writerIndex(), bytes, size));
+    }
+
+    /*
+     * The setXXX() methods are writing at the given index, without checking for the buffer writable bytes nor
+     * updating the writer index, and return the index following the written bytes. They are used by the generated
+     * writeTo() after having reserved the serialized size of the whole message.
+     */
+
+    private static int setRawLittleEndian(ByteBuf b, int idx, long bytes, int size) {
+        switch (size) {
+            case 1:
+                b.setByte(idx, (int) bytes);
+                break;
+            case 2:
+                b.setShortLE(idx, (int) bytes);
+                break;
+            case 3:
+                b.setMediumLE(idx, (int) bytes);
+                break;
+            case 4:
+                b.setIntLE(idx, (int) bytes);
+                break;
+            case 8:
+                b.setLongLE(idx, bytes);
+                break;
+            default:
+                b.setIntLE(idx, (int) bytes);
+                setRawLittleEndian(b, idx + 4, bytes >>> 32, size - 4);
+        }
+        return idx + size;
+    }
+
+    static int setVarInt(ByteBuf b, int idx, int n) {
+        if (n >= 0) {
+            return _setVarInt(b, idx, n);
+        } else {
+            return setVarInt64(b, idx, n);
+        }
+    }
+
+    static int setSignedVarInt(ByteBuf b, int idx, int n) {
+        return _setVarInt(b, idx, encodeZigZag32(n));
+    }
+
+    static int setSignedVarInt64(ByteBuf b, int idx, long n) {
+        return setVarInt64(b, idx, encodeZigZag64(n));
+    }
+
+    private static int _setVarInt(ByteBuf b, int idx, int n) {
+        if ((n & ~0x7F) == 0) {
+            b.setByte(idx, n);
+            return idx + 1;
+        } else {
+            int size = computeVarUIntSize(n);
+            return setRawLittleEndian(b, idx, spreadVarInt(n & 0xFFFFFFFFL) | continuationBits(size), size);
+        }
+    }
+
+    static int setVarInt64(ByteBuf b, int idx, long value) {
+        if ((value & ~0x7FL) == 0) {
+            b.setByte(idx, (int) value);
+            return idx + 1;
+        }
+
+        int size = computeVarInt64Size(value);
+        if (size > 8) {
+            idx = setRawLittleEndian(b, idx, spreadVarInt(value) | VARINT_CONTINUATION_BITS, 8);
+            value >>>= 56;
+            size -= 8;
+        }
+        return setRawLittleEndian(b, idx, spreadVarInt(value) | continuationBits(size), size);
+    }
+
+    static int setBoolean(ByteBuf b, int idx, boolean n) {
+        b.setByte(idx, n ? 1 : 0);
+        return idx + 1;
+    }
+
+    static int setFixedInt32(ByteBuf b, int idx, int n) {
+        b.setIntLE(idx, n);
+        return idx + 4;
+    }
+
+    static int setFixedInt64(ByteBuf b, int idx, long n) {
+        b.setLongLE(idx, n);
+        return idx + 8;
+    }
+
+    static int setFloat(ByteBuf b, int idx, float n) {
+        return setFixedInt32(b, idx, Float.floatToRawIntBits(n));
+    }
+
+    static int setDouble(ByteBuf b, int idx, double n) {
+        return setFixedInt64(b, idx, Double.doubleToRawLongBits(n));
+    }
+
+    static int setString(ByteBuf b, int idx, String s, int bytesCount) {
+        int writerIdx = b.writerIndex();
+        b.writerIndex(idx);
+        ByteBufUtil.reserveAndWriteUtf8(b, s, bytesCount);
+        b.writerIndex(writerIdx);
+        return idx + bytesCount;
+    }
+
+    /**
+     * Encodes a tag into its varint bytes (little-endian), to be used with the setTagAndXXX() methods.
+     */
+    static long encodeTag(int tag) {
+        return spreadVarInt(tag & 0xFFFFFFFFL) | continuationBits(computeVarUIntSize(tag));
+    }
+
+    static int setTagAndVarInt(ByteBuf b, int idx, long tagBytes, int tagSize, int n) {
+        return setTagAndVarInt64(b, idx, tagBytes, tagSize, n);
+    }
+
+    static int setTagAndSignedVarInt(ByteBuf b, int idx, long tagBytes, int tagSize, int n) {
+        return setTagAndVarInt64(b, idx, tagBytes, tagSize, encodeZigZag32(n) & 0xFFFFFFFFL);
+    }
+
+    static int setTagAndSignedVarInt64(ByteBuf b, int idx, long tagBytes, int tagSize, long n) {
+        return setTagAndVarInt64(b, idx, tagBytes, tagSize, encodeZigZag64(n));
+    }
+
+    static int setTagAndVarInt64(ByteBuf b, int idx, long tagBytes, int tagSize, long value) {
+        int size = computeVarInt64Size(value);
+        if (tagSize + size <= 8) {
+            // Tag and value are written with a single store
+            long valueBytes = spreadVarInt(value) | continuationBits(size);
+            return setRawLittleEndian(b, idx, tagBytes | (valueBytes << (tagSize << 3)), tagSize + size);
+        } else {
+            idx = setRawLittleEndian(b, idx, tagBytes, tagSize);
+            return setVarInt64(b, idx, value);
+        }
+    }
+
+    static int setTagAndFixedInt32(ByteBuf b, int idx, long tagBytes, int tagSize, int n) {
+        if (tagSize <= 4) {
+            return setRawLittleEndian(b, idx, tagBytes | ((n & 0xFFFFFFFFL) << (tagSize << 3)), tagSize + 4);
+        } else {
+            idx = setRawLittleEndian(b, idx, tagBytes, tagSize);
+            return setFixedInt32(b, idx, n);
+        }
+    }
+
+    static int setTagAndFixedInt64(ByteBuf b, int idx, long tagBytes, int tagSize, long n) {
+        int shift = tagSize << 3;
+        idx = setRawLittleEndian(b, idx, tagBytes | (n << shift), 8);
+        return setRawLittleEndian(b, idx, n >>> (64 - shift), tagSize);
+    }
+
+    static int setTagAndFloat(ByteBuf b, int idx, long tagBytes, int tagSize, float n) {
+        return setTagAndFixedInt32(b, idx, tagBytes, tagSize, Float.floatToRawIntBits(n));
+    }
+
+    static int setTagAndDouble(ByteBuf b, int idx, long tagBytes, int tagSize, double n) {
+        return setTagAndFixedInt64(b, idx, tagBytes, tagSize, Double.doubleToRawLongBits(n));
+    }
+
     static void writeFixedInt32(ByteBuf b, int n) {
         b.writeIntLE(n);
     }
@@ -129,15 +330,89 @@ class LightProtoCodec {
         return (n << 1) ^ (n >> 63);
     }
 
-    private static int decodeZigZag32(int n) {
+    static int decodeZigZag32(int n) {
         return n >>> 1 ^ -(n & 1);
     }
 
-    private static long decodeZigZag64(long n) {
+    static long decodeZigZag64(long n) {
         return n >>> 1 ^ -(n & 1L);
     }
 
     static int readVarInt(ByteBuf buf) {
+        int readerIdx = buf.readerIndex();
+        if (buf.readableBytes() >= 8 && (buf.hasArray() || buf.hasMemoryAddress())) {
+            long word = buf.getLongLE(readerIdx);
+            if ((word & 0x80) == 0) {
+                buf.readerIndex(readerIdx + 1);
+                return (int) word & 0x7F;
+            }
+
+            long stopBits = ~word & VARINT_CONTINUATION_BITS;
+            if (stopBits != 0) {
+                // The varint ends at the first byte that has the continuation bit cleared
+                buf.readerIndex(readerIdx + varIntLength(stopBits));
+                return (int) compactVarInt(word & (stopBits ^ (stopBits - 1)));
+            }
+        }
+
+        return readVarIntSlow(buf);
+    }
+
+    static long readVarInt64(ByteBuf buf) {
+        int readerIdx = buf.readerIndex();
+        int readable = buf.readableBytes();
+        if (readable >= 8 && (buf.hasArray() || buf.hasMemoryAddress())) {
+            long word = buf.getLongLE(readerIdx);
+            if ((word & 0x80) == 0) {
+                buf.readerIndex(readerIdx + 1);
+                return word & 0x7F;
+            }
+
+            long stopBits = ~word & VARINT_CONTINUATION_BITS;
+            if (stopBits != 0) {
+                buf.readerIndex(readerIdx + varIntLength(stopBits));
+                return compactVarInt(word & (stopBits ^ (stopBits - 1)));
+            } else if (readable >= 10) {
+                // 9 or 10 bytes varint, the first 8 bytes are carrying the lower 56 bits
+                long result = compactVarInt(word);
+                byte tmp = buf.getByte(readerIdx + 8);
+                result |= (long) (tmp & 0x7F) << 56;
+                if (tmp >= 0) {
+                    buf.readerIndex(readerIdx + 9);
+                    return result;
+                }
+
+                tmp = buf.getByte(readerIdx + 9);
+                result |= (long) tmp << 63;
+                if (tmp >= 0) {
+                    buf.readerIndex(readerIdx + 10);
+                    return result;
+                }
+                throw new IllegalArgumentException("Encountered a malformed varint.");
+            }
+        }
+
+        return readVarInt64Slow(buf);
+    }
+
+    /**
+     * Number of bytes of a varint, given the mask of the bytes that don't have the continuation bit set.
+     */
+    private static int varIntLength(long stopBits) {
+        return (Long.numberOfTrailingZeros(stopBits) + 1) >>> 3;
+    }
+
+    /**
+     * Drops the continuation bits from up to 8 varint bytes (little-endian) and packs the 7 bits groups together.
+     */
+    private static long compactVarInt(long word) {
+        word &= ~VARINT_CONTINUATION_BITS;
+        word = (word & 0x007F007F007F007FL) | ((word & 0x7F007F007F007F00L) >>> 1);
+        word = (word & 0x00003FFF00003FFFL) | ((word & 0x3FFF00003FFF0000L) >>> 2);
+        return (word & 0x000000000FFFFFFFL) | ((word & 0x0FFFFFFF00000000L) >>> 4);
+    }
+
+    private static int readVarIntSlow(ByteBuf buf) {
         byte tmp = buf.readByte();
         if (tmp >= 0) {
             return tmp;
@@ -171,7 +446,7 @@ class LightProtoCodec {
         return result;
     }
 
-    static long readVarInt64(ByteBuf buf) {
+    private static long readVarInt64Slow(ByteBuf buf) {
         int shift = 0;
         long result = 0;
         while (shift < 64) {
@@ -272,15 +547,727 @@ class LightProtoCodec {
         }
     }
 
-    static final class StringHolder {
-        String s;
-        int idx;
-        int len;
+    /**
+     * Same as {@link #skipUnknownField(int, ByteBuf)}, for a field value starting at the given index, in a message
+     * ending at the given end index.
+     *
+     * @return the index following the field
+     */
+    static int skipUnknownField(int tag, ByteBuf b, int idx, int end) {
+        int tagType = getTagType(tag);
+        switch (tagType) {
+            case WIRETYPE_VARINT:
+                return skipVarInt(b, idx);
+            case WIRETYPE_FIXED64:
+                return idx + 8;
+            case WIRETYPE_LENGTH_DELIMITED:
+                long lenAndIdx = getVarIntAndIdx(b, idx);
+                idx = (int) (lenAndIdx >>> 32);
+                return idx + checkLength((int) lenAndIdx, idx, end);
+            case WIRETYPE_FIXED32:
+                return idx + 4;
+            default:
+                throw new IllegalArgumentException("Invalid unknown tag type: " + tagType);
+        }
+    }
+
+    /**
+     * Checks the length prefix of a value starting at the given index, which must not be negative nor overflow the
+     * message ending at the given end index, so that a malformed message can't move the parsing cursor backwards nor
+     * past its end.
+     *
+     * @return the length
+     */
+    static int checkLength(int len, int idx, int end) {
+        if (len < 0 || len > end - idx) {
+            throw new IllegalArgumentException("Malformed message");
+        }
+        return len;
+    }
+
+    static final int FIELD_INCOMPLETE = -1;
+    static final int FIELD_MALFORMED = -2;
+
+    /**
+     * Finds the end of the field starting at the given index, without reading past the buffer writer index nor the
+     * end of the message.
+     *
+     * @return the index following the field, {@link #FIELD_INCOMPLETE} if more bytes are needed to read the whole
+     * field or {@link #FIELD_MALFORMED} if the field can't be parsed
+     */
+    static int findFieldEnd(ByteBuf b, int idx, int end) {
+        int limit = Math.min(b.writerIndex(), end);
+        long tag = peekVarInt(b, idx, limit, end);
+        if (tag < 0) {
+            return (int) tag;
+        } else if (getFieldId((int) tag) == 0) {
+            return FIELD_MALFORMED;
+        }
+
+        idx = (int) (tag >>> 32);
+        switch (getTagType((int) tag)) {
+            case WIRETYPE_VARINT:
+                for (int i = 0; i < 10; i++) {
+                    if (idx >= limit) {
+                        return limit == end ? FIELD_MALFORMED : FIELD_INCOMPLETE;
+                    } else if (b.getByte(idx++) >= 0) {
+                        return idx;
+                    }
+                }
+                return FIELD_MALFORMED;
+            case WIRETYPE_FIXED64:
+                return checkFieldEnd(idx + 8L, limit, end);
+            case WIRETYPE_LENGTH_DELIMITED:
+                long len = peekVarInt(b, idx, limit, end);
+                if (len < 0) {
+                    return (int) len;
+                } else if ((int) len < 0) {
+                    return FIELD_MALFORMED;
+                }
+                return checkFieldEnd((len >>> 32) + (int) len, limit, end);
+            case WIRETYPE_FIXED32:
+                return checkFieldEnd(idx + 4L, limit, end);
+            default:
+                return FIELD_MALFORMED;
+        }
+    }
+
+    /**
+     * Reads the tag of the field starting at the given index, in a buffer holding a valid message.
+     */
+    static int getTag(ByteBuf b, int idx) {
+        return (int) peekVarInt(b, idx, b.writerIndex(), b.writerIndex());
+    }
+
+    /**
+     * Reads a varint at the given index, without moving the reader index.
+     */
+    static long getVarInt64(ByteBuf b, int idx) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte tmp = b.getByte(idx++);
+            result |= (long) (tmp & 0x7F) << shift;
+            if (tmp >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Encountered a malformed varint.");
+    }
+
+    /**
+     * Returns the index following the 64 bits varint at the given index, which was decoded to the given value. The
+     * varint usually has the shortest encoding of its value, and is otherwise padded with continuation bytes, that are
+     * skipped. The value and its end index can't be returned together in a long, like {@link #getVarIntAndIdx}.
+     */
+    static int getVarInt64End(ByteBuf b, int idx, long value) {
+        int end = idx + computeVarInt64Size(value);
+        return b.getByte(end - 1) >= 0 ? end : skipVarInt(b, end);
+    }
+
+    static int getVarInt(ByteBuf b, int idx) {
+        return (int) getVarInt64(b, idx);
+    }
+
+    /**
+     * Reads a 32 bits varint at the given index, and returns it in the lower 32 bits of the result, with the index
+     * following it in the upper 32 bits, so that the varint is decoded only once.
+     */
+    static long getVarIntAndIdx(ByteBuf b, int idx) {
+        int result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte tmp = b.getByte(idx++);
+            if (shift < 32) {
+                result |= (tmp & 0x7F) << shift;
+            }
+            if (tmp >= 0) {
+                return varIntAndIdx(result, idx);
+            }
+        }
+        throw new IllegalArgumentException("Encountered a malformed varint.");
+    }
+
+    private static long varIntAndIdx(int value, int idx) {
+        return (long) idx << 32 | value & 0xFFFFFFFFL;
+    }
+
+    static int getSignedVarInt(ByteBuf b, int idx) {
+        return decodeZigZag32(getVarInt(b, idx));
+    }
+
+    static long getSignedVarInt64(ByteBuf b, int idx) {
+        return decodeZigZag64(getVarInt64(b, idx));
     }
 
-    static final class BytesHolder {
-        ByteBuf b;
-        int idx;
-        int len;
+    static int getFixedInt32(ByteBuf b, int idx) {
+        return b.getIntLE(idx);
+    }
+
+    static long getFixedInt64(ByteBuf b, int idx) {
+        return b.getLongLE(idx);
+    }
+
+    static float getFloat(ByteBuf b, int idx) {
+        return Float.intBitsToFloat(b.getIntLE(idx));
+    }
+
+    static double getDouble(ByteBuf b, int idx) {
+        return Double.longBitsToDouble(b.getLongLE(idx));
+    }
+
+    /**
+     * Reads a 32 bits varint at the given index of an array. Based on the protobuf CodedInputStream decoding, where
+     * the continuation bits are cancelled by the final XOR.
+     */
+    static int getVarInt(byte[] b, int idx) {
+        int x = b[idx];
+        if (x >= 0) {
+            return x;
+        } else if ((x ^= b[idx + 1] << 7) < 0) {
+            return x ^ (~0 << 7);
+        } else if ((x ^= b[idx + 2] << 14) >= 0) {
+            return x ^ ((~0 << 7) ^ (~0 << 14));
+        } else if ((x ^= b[idx + 3] << 21) < 0) {
+            return x ^ ((~0 << 7) ^ (~0 << 14) ^ (~0 << 21));
+        }
+        int y = b[idx + 4];
+        x ^= y << 28;
+        x ^= (~0 << 7) ^ (~0 << 14) ^ (~0 << 21) ^ (~0 << 28);
+        if (y < 0 && b[idx + 5] < 0 && b[idx + 6] < 0 && b[idx + 7] < 0 && b[idx + 8] < 0 && b[idx + 9] < 0) {
+            throw new IllegalArgumentException("Encountered a malformed varint.");
+        }
+        return x;
+    }
+
+    /**
+     * Same as {@link #getVarIntAndIdx(ByteBuf, int)}, decoding the varint like {@link #getVarInt(byte[], int)}.
+     */
+    static long getVarIntAndIdx(byte[] b, int idx) {
+        int x = b[idx];
+        if (x >= 0) {
+            return varIntAndIdx(x, idx + 1);
+        } else if ((x ^= b[idx + 1] << 7) < 0) {
+            return varIntAndIdx(x ^ (~0 << 7), idx + 2);
+        } else if ((x ^= b[idx + 2] << 14) >= 0) {
+            return varIntAndIdx(x ^ ((~0 << 7) ^ (~0 << 14)), idx + 3);
+        } else if ((x ^= b[idx + 3] << 21) < 0) {
+            return varIntAndIdx(x ^ ((~0 << 7) ^ (~0 << 14) ^ (~0 << 21)), idx + 4);
+        }
+        int y = b[idx + 4];
+        x ^= y << 28;
+        x ^= (~0 << 7) ^ (~0 << 14) ^ (~0 << 21) ^ (~0 << 28);
+        // The upper bits of the negative values are dropped
+        int end = idx + 5;
+        if (y < 0) {
+            while (b[end++] < 0) {
+                if (end == idx + 10) {
+                    throw new IllegalArgumentException("Encountered a malformed varint.");
+                }
+            }
+        }
+        return varIntAndIdx(x, end);
+    }
+
+    static long getVarInt64(byte[] b, int idx) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte tmp = b[idx++];
+            result |= (long) (tmp & 0x7F) << shift;
+            if (tmp >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Encountered a malformed varint.");
+    }
+
+    /**
+     * Same as {@link #getVarInt64End(ByteBuf, int, long)}, on an array.
+     */
+    static int getVarInt64End(byte[] b, int idx, long value) {
+        int end = idx + computeVarInt64Size(value);
+        return b[end - 1] >= 0 ? end : skipVarInt(b, end);
+    }
+
+    static int getSignedVarInt(byte[] b, int idx) {
+        return decodeZigZag32(getVarInt(b, idx));
+    }
+
+    static long getSignedVarInt64(byte[] b, int idx) {
+        return decodeZigZag64(getVarInt64(b, idx));
+    }
+
+    static int getFixedInt32(byte[] b, int idx) {
+        return (b[idx] & 0xFF) | (b[idx + 1] & 0xFF) << 8 | (b[idx + 2] & 0xFF) << 16 | (b[idx + 3] & 0xFF) << 24;
+    }
+
+    static long getFixedInt64(byte[] b, int idx) {
+        return (getFixedInt32(b, idx) & 0xFFFFFFFFL) | (long) getFixedInt32(b, idx + 4) << 32;
+    }
+
+    static float getFloat(byte[] b, int idx) {
+        return Float.intBitsToFloat(getFixedInt32(b, idx));
+    }
+
+    static double getDouble(byte[] b, int idx) {
+        return Double.longBitsToDouble(getFixedInt64(b, idx));
+    }
+
+    static int skipVarInt(byte[] b, int idx) {
+        while (b[idx++] < 0) {
+        }
+        return idx;
+    }
+
+    static int skipUnknownField(int tag, byte[] b, int idx, int end) {
+        int tagType = getTagType(tag);
+        switch (tagType) {
+            case WIRETYPE_VARINT:
+                return skipVarInt(b, idx);
+            case WIRETYPE_FIXED64:
+                return idx + 8;
+            case WIRETYPE_LENGTH_DELIMITED:
+                long lenAndIdx = getVarIntAndIdx(b, idx);
+                idx = (int) (lenAndIdx >>> 32);
+                return idx + checkLength((int) lenAndIdx, idx, end);
+            case WIRETYPE_FIXED32:
+                return idx + 4;
+            default:
+                throw new IllegalArgumentException("Invalid unknown tag type: " + tagType);
+        }
+    }
+
+    /**
+     * Overwrites the varint at the given index with a value of the same encoded size. Unlike the setXXX() methods, no
+     * byte past the varint is written.
+     */
+    static void patchVarInt64(ByteBuf b, int idx, long value) {
+        while ((value & ~0x7FL) != 0) {
+            b.setByte(idx++, (int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        b.setByte(idx, (int) value);
+    }
+
+    static void patchVarInt(ByteBuf b, int idx, int value) {
+        patchVarInt64(b, idx, value);
+    }
+
+    static void patchSignedVarInt(ByteBuf b, int idx, int value) {
+        patchVarInt64(b, idx, encodeZigZag32(value) & 0xFFFFFFFFL);
+    }
+
+    static void patchSignedVarInt64(ByteBuf b, int idx, long value) {
+        patchVarInt64(b, idx, encodeZigZag64(value));
+    }
+
+    /**
+     * Returns the index following the varint starting at the given index.
+     */
+    static int skipVarInt(ByteBuf b, int idx) {
+        while (b.getByte(idx++) < 0) {
+        }
+        return idx;
+    }
+
+    /**
+     * Finds the last occurrence of a field with the given tag in a serialized message.
+     *
+     * @return the index of the field tag or -1 if the field is not present
+     */
+    static int findLastField(ByteBuf b, int idx, int end, int tag) {
+        int fieldIdx = -1;
+        while (idx < end) {
+            if (getTag(b, idx) == tag) {
+                fieldIdx = idx;
+            }
+            idx = findFieldEnd(b, idx, end);
+            if (idx < 0) {
+                throw new IllegalArgumentException("Malformed message");
+            }
+        }
+        return fieldIdx;
+    }
+
+    private static int checkFieldEnd(long fieldEnd, int limit, int end) {
+        if (fieldEnd > end) {
+            return FIELD_MALFORMED;
+        } else if (fieldEnd > limit) {
+            return FIELD_INCOMPLETE;
+        } else {
+            return (int) fieldEnd;
+        }
+    }
+
+    /**
+     * Reads a 32 bits varint at the given index, returning the value in the lower 32 bits and the index following the
+     * varint in the upper 32 bits, or one of the negative FIELD_XXX codes.
+     */
+    private static long peekVarInt(ByteBuf b, int idx, int limit, int end) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (idx >= limit) {
+                return limit == end ? FIELD_MALFORMED : FIELD_INCOMPLETE;
+            }
+            byte tmp = b.getByte(idx++);
+            result |= (tmp & 0x7F) << shift;
+            if (tmp >= 0) {
+                return (result & 0xFFFFFFFFL) | ((long) idx << 32);
+            }
+        }
+        return FIELD_MALFORMED;
+    }
+
+    // Schema tables of the table-driven messages: 3 ints per field, sorted by field number, holding the tag, the
+    // storage slot and the kind of the field, along with its flags
+    static final int SCHEMA_ENTRY_SIZE = 3;
+    static final int KIND_VARINT32 = 0;
+    static final int KIND_VARINT64 = 1;
+    static final int KIND_SIGNED_VARINT32 = 2;
+    static final int KIND_SIGNED_VARINT64 = 3;
+    static final int KIND_FIXED32 = 4;
+    static final int KIND_FIXED64 = 5;
+    // Strings, bytes and messages, parsed and serialized by the generated code
+    static final int KIND_CUSTOM = 6;
+    static final int KIND_MASK = 7;
+    static final int FLAG_REPEATED = 8;
+    static final int FLAG_PACKED = 16;
+
+    /**
+     * Implemented by the table-driven messages, giving access to their fields by storage slot. The numbers are
+     * exchanged as raw 64 bits values, with floating point numbers as their bits.
+     */
+    interface TableMessage {
+        /**
+         * Sets a number field, or adds an item to a repeated number field.
+         *
+         * @return false if the value has no matching enum constant
+         */
+        boolean _setField(int _slot, long _value);
+
+        long _getField(int _slot, int _index);
+
+        /**
+         * Returns the number of items of a repeated number field, or whether a number field is set as 0 or 1.
+         */
+        int _getFieldCount(int _slot);
+
+        /**
+         * Parses the value of a custom field at the given index, in a message ending at the given end index, and
+         * returns the index following it.
+         */
+        int _parseField(int _slot, ByteBuf _buffer, int _idx, int _endIdx);
+
+        /**
+         * Returns the serialized size of a custom field, tags included, or 0 when it is not set.
+         */
+        int _getFieldSize(int _slot);
+
+        int _writeField(int _slot, ByteBuf _b, int _idx);
+
+        void _addUnknownField(int _idx, int _len);
+    }
+
+    // Hint given to findField() before any field was found
+    static final int NO_FIELD = -SCHEMA_ENTRY_SIZE;
+
+    /**
+     * Finds the schema entry of the field with the given tag, or returns -1 if the field is unknown or was encoded
+     * with an unexpected wire type. Since the fields are usually encoded by increasing number, the entry following
+     * the last one found, given as hint, is tried first, and then the hint itself for repeated fields.
+     */
+    static int findField(int[] schema, int tag, int hint) {
+        int fieldId = getFieldId(tag);
+        int entry = hint + SCHEMA_ENTRY_SIZE;
+        if (entry >= schema.length || getFieldId(schema[entry]) != fieldId) {
+            entry = hint;
+            if (entry < 0 || getFieldId(schema[entry]) != fieldId) {
+                entry = searchField(schema, fieldId);
+                if (entry < 0) {
+                    return -1;
+                }
+            }
+        }
+
+        int kind = schema[entry + 2];
+        if (tag == schema[entry]) {
+            return entry;
+        } else if ((kind & FLAG_REPEATED) != 0 && (kind & KIND_MASK) != KIND_CUSTOM
+                && getTagType(tag) == WIRETYPE_LENGTH_DELIMITED) {
+            // Repeated numbers are accepted both packed and not packed
+            return entry;
+        } else {
+            return -1;
+        }
+    }
+
+    private static int searchField(int[] schema, int fieldId) {
+        int low = 0;
+        int high = schema.length / SCHEMA_ENTRY_SIZE - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = getFieldId(schema[mid * SCHEMA_ENTRY_SIZE]);
+            if (midId < fieldId) {
+                low = mid + 1;
+            } else if (midId > fieldId) {
+                high = mid - 1;
+            } else {
+                return mid * SCHEMA_ENTRY_SIZE;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the fields of a table-driven message, between the given indexes.
+     */
+    static void parseFields(TableMessage msg, int[] schema, ByteBuf b, int idx, int end) {
+        int entry = NO_FIELD;
+        while (idx < end) {
+            int tagIdx = idx;
+            long tagAndIdx = getVarIntAndIdx(b, idx);
+            int tag = (int) tagAndIdx;
+            idx = (int) (tagAndIdx >>> 32);
+            int found = findField(schema, tag, entry);
+            if (found < 0) {
+                idx = skipUnknownField(tag, b, idx, end);
+                msg._addUnknownField(tagIdx, idx - tagIdx);
+            } else {
+                entry = found;
+                idx = parseField(msg, schema, entry, tag, b, idx, end);
+            }
+        }
+        // The last field is overflowing the message
+        if (idx > end) {
+            throw new IllegalArgumentException("Malformed message");
+        }
+    }
+
+    /**
+     * Parses the value of the field of the given schema entry, whose tag was read just before the given index, in a
+     * message ending at the given end index.
+     *
+     * @return the index following the field
+     */
+    static int parseField(TableMessage msg, int[] schema, int entry, int tag, ByteBuf b, int idx, int end) {
+        int slot = schema[entry + 1];
+        int kind = schema[entry + 2] & KIND_MASK;
+        if (kind == KIND_CUSTOM) {
+            return msg._parseField(slot, b, idx, end);
+        } else if (tag == schema[entry]) {
+            int valueEnd = parseNumber(msg, slot, kind, b, idx);
+            if (valueEnd < 0) {
+                // Kept as an unknown field, from its tag
+                valueEnd = ~valueEnd;
+                int tagIdx = idx - computeVarUIntSize(tag);
+                msg._addUnknownField(tagIdx, valueEnd - tagIdx);
+            }
+            return valueEnd;
+        }
+
+        // The values of a packed field have no tag of their own, the rejected ones are dropped
+        long lenAndIdx = getVarIntAndIdx(b, idx);
+        idx = (int) (lenAndIdx >>> 32);
+        int packedEnd = idx + checkLength((int) lenAndIdx, idx, end);
+        while (idx < packedEnd) {
+            idx = parseNumber(msg, slot, kind, b, idx);
+            if (idx < 0) {
+                idx = ~idx;
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Parses a number and sets it into the field.
+     *
+     * @return the index following the number, or its complement if the field rejected the value
+     */
+    private static int parseNumber(TableMessage msg, int slot, int kind, ByteBuf b, int idx) {
+        long value;
+        int end;
+        switch (kind) {
+            case KIND_VARINT32:
+            case KIND_SIGNED_VARINT32:
+                long valueAndIdx = getVarIntAndIdx(b, idx);
+                value = kind == KIND_VARINT32 ? (int) valueAndIdx : decodeZigZag32((int) valueAndIdx);
+                end = (int) (valueAndIdx >>> 32);
+                break;
+            case KIND_VARINT64:
+            case KIND_SIGNED_VARINT64:
+                value = getVarInt64(b, idx);
+                end = getVarInt64End(b, idx, value);
+                if (kind == KIND_SIGNED_VARINT64) {
+                    value = decodeZigZag64(value);
+                }
+                break;
+            case KIND_FIXED32:
+                value = getFixedInt32(b, idx);
+                end = idx + 4;
+                break;
+            default:
+                value = getFixedInt64(b, idx);
+                end = idx + 8;
+        }
+        return msg._setField(slot, value) ? end : ~end;
+    }
+
+    /**
+     * Computes the serialized size of the fields of a table-driven message, unknown fields excluded.
+     */
+    static int computeFieldsSize(TableMessage msg, int[] schema) {
+        int size = 0;
+        for (int entry = 0; entry < schema.length; entry += SCHEMA_ENTRY_SIZE) {
+            int tag = schema[entry];
+            int slot = schema[entry + 1];
+            int kind = schema[entry + 2];
+            if ((kind & KIND_MASK) == KIND_CUSTOM) {
+                size += msg._getFieldSize(slot);
+                continue;
+            }
+
+            int count = msg._getFieldCount(slot);
+            if (count == 0) {
+                continue;
+            }
+            int numbersSize = computeNumbersSize(msg, slot, kind & KIND_MASK, count);
+            if ((kind & FLAG_PACKED) != 0) {
+                size += computeVarUIntSize(packedTag(tag)) + computeVarIntSize(numbersSize) + numbersSize;
+            } else {
+                size += count * computeVarUIntSize(tag) + numbersSize;
+            }
+        }
+        return size;
+    }
+
+    private static int computeNumbersSize(TableMessage msg, int slot, int kind, int count) {
+        if (kind == KIND_FIXED32) {
+            return count * 4;
+        } else if (kind == KIND_FIXED64) {
+            return count * 8;
+        }
+
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            long value = msg._getField(slot, i);
+            switch (kind) {
+                case KIND_VARINT32:
+                    size += computeVarIntSize((int) value);
+                    break;
+                case KIND_VARINT64:
+                    size += computeVarInt64Size(value);
+                    break;
+                case KIND_SIGNED_VARINT32:
+                    size += computeSignedVarIntSize((int) value);
+                    break;
+                default:
+                    size += computeSignedVarInt64Size(value);
+                    break;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes the fields of a table-driven message at the given index, by increasing field number, and returns the
+     * index following them. The size of the message must have been computed first.
+     */
+    static int writeFields(TableMessage msg, int[] schema, ByteBuf b, int idx) {
+        for (int entry = 0; entry < schema.length; entry += SCHEMA_ENTRY_SIZE) {
+            int tag = schema[entry];
+            int slot = schema[entry + 1];
+            int kind = schema[entry + 2];
+            if ((kind & KIND_MASK) == KIND_CUSTOM) {
+                idx = msg._writeField(slot, b, idx);
+                continue;
+            }
+
+            int count = msg._getFieldCount(slot);
+            if ((kind & FLAG_PACKED) != 0) {
+                if (count > 0) {
+                    idx = setVarInt(b, idx, packedTag(tag));
+                    idx = setVarInt(b, idx, computeNumbersSize(msg, slot, kind & KIND_MASK, count));
+                    for (int i = 0; i < count; i++) {
+                        idx = setNumber(b, idx, kind & KIND_MASK, msg._getField(slot, i));
+                    }
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    idx = setVarInt(b, idx, tag);
+                    idx = setNumber(b, idx, kind & KIND_MASK, msg._getField(slot, i));
+                }
+            }
+        }
+        return idx;
+    }
+
+    private static int setNumber(ByteBuf b, int idx, int kind, long value) {
+        switch (kind) {
+            case KIND_VARINT32:
+                return setVarInt(b, idx, (int) value);
+            case KIND_VARINT64:
+                return setVarInt64(b, idx, value);
+            case KIND_SIGNED_VARINT32:
+                return setSignedVarInt(b, idx, (int) value);
+            case KIND_SIGNED_VARINT64:
+                return setSignedVarInt64(b, idx, value);
+            case KIND_FIXED32:
+                return setFixedInt32(b, idx, (int) value);
+            default:
+                return setFixedInt64(b, idx, value);
+        }
+    }
+
+    private static int packedTag(int tag) {
+        return (tag & ~TAG_TYPE_MASK) | WIRETYPE_LENGTH_DELIMITED;
+    }
+
+    // Cold paths of the generated accessors, kept out of line so that the accessors stay small enough to be inlined
+
+    static IllegalStateException fieldNotSet(String field) {
+        return new IllegalStateException("Field '" + field + "' is not set");
+    }
+
+    static IndexOutOfBoundsException indexOutOfBounds(int idx, int count, String field) {
+        return new IndexOutOfBoundsException("Index " + idx + " is out of the list size (" + count + ") for field '"
+                + field + "'");
+    }
+
+    /**
+     * Returns an array holding at least {@code length} items, with the content of {@code a}, which may be null. The
+     * capacity is doubled on each growth.
+     */
+    static int[] grow(int[] a, int length) {
+        return a == null ? new int[Math.max(4, length)] : Arrays.copyOf(a, Math.max(a.length << 1, length));
+    }
+
+    static long[] grow(long[] a, int length) {
+        return a == null ? new long[Math.max(4, length)] : Arrays.copyOf(a, Math.max(a.length << 1, length));
+    }
+
+    static float[] grow(float[] a, int length) {
+        return a == null ? new float[Math.max(4, length)] : Arrays.copyOf(a, Math.max(a.length << 1, length));
+    }
+
+    static double[] grow(double[] a, int length) {
+        return a == null ? new double[Math.max(4, length)] : Arrays.copyOf(a, Math.max(a.length << 1, length));
+    }
+
+    static boolean[] grow(boolean[] a, int length) {
+        return a == null ? new boolean[Math.max(4, length)] : Arrays.copyOf(a, Math.max(a.length << 1, length));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T[] grow(T[] a, int length, Class<T> type) {
+        return a == null ? (T[]) Array.newInstance(type, Math.max(4, length))
+                : Arrays.copyOf(a, Math.max(a.length << 1, length));
+    }
+
+    /**
+     * Implemented by the generated messages, so that a nested message can invalidate the serialized size cached by
+     * the message containing it, and mark the field holding it as modified.
+     */
+    interface ParentMessage {
+        void _clearCachedSize();
+
+        void _fieldModified(int index);
     }
 }
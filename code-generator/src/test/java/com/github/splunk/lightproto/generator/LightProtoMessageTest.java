@@ -0,0 +1,231 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.generator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCounted;
+import io.protostuff.parser.Proto;
+import io.protostuff.parser.ProtoUtil;
+import org.jboss.forge.roaster.Roaster;
+import org.jboss.forge.roaster.model.source.JavaClassSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LightProtoMessageTest {
+
+    private static String generate(LightProtoMessage m) {
+        StringWriter sw = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(sw)) {
+            m.generate(pw);
+        }
+        return sw.toString();
+    }
+
+    private static void assertMethodSizes(LightProtoMessage m) {
+        assertFalse(m.getMethodSizes().isEmpty());
+        m.getMethodSizes().forEach((method, size) ->
+                assertTrue(size <= LightProtoMessage.METHOD_SIZE_LIMIT, method + " is estimated to " + size + " bytes"));
+    }
+
+    // HotSpot does not JIT compile the methods over this bytecode size
+    private static final int HUGE_METHOD_LIMIT = 8000;
+
+    /**
+     * Compiles the classes generated from the proto, and checks the bytecode size of each of their methods, read
+     * from the code_length of its Code attribute.
+     */
+    private static void assertCompiledMethodSizes(Path dir, Proto proto) throws Exception {
+        File src = dir.resolve("src").toFile();
+        File classes = dir.resolve("classes").toFile();
+        classes.mkdirs();
+        List<File> files = new ArrayList<>(new LightProto(proto, "Outer", false).generate(src));
+        File codec = new File(src, "LightProtoCodec.java");
+        try (InputStream is = LightProto.class.getResourceAsStream("/com/github/splunk/lightproto/generator/LightProtoCodec.java")) {
+            JavaClassSource codecClass = (JavaClassSource) Roaster.parse(is);
+            codecClass.setPackage(proto.getJavaPackageName());
+            Files.write(codec.toPath(), codecClass.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        files.add(codec);
+
+        List<String> classPath = new ArrayList<>();
+        for (Class<?> c : Arrays.asList(ByteBuf.class, ReferenceCounted.class)) {
+            classPath.add(new File(c.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            assertTrue(compiler.getTask(null, fileManager, null,
+                    Arrays.asList("-nowarn", "-classpath", String.join(File.pathSeparator, classPath), "-d", classes.getPath()), null,
+                    fileManager.getJavaFileObjectsFromFiles(files)).call());
+        }
+
+        Map<String, Integer> sizes = new HashMap<>();
+        try (Stream<Path> classFiles = Files.walk(classes.toPath())) {
+            for (Path classFile : classFiles.filter(f -> f.toString().endsWith(".class")).collect(Collectors.toList())) {
+                readMethodSizes(classFile, sizes);
+            }
+        }
+        assertFalse(sizes.isEmpty());
+        sizes.forEach((method, size) ->
+                assertTrue(size <= HUGE_METHOD_LIMIT, method + " is compiled to " + size + " bytes"));
+    }
+
+    private static void readMethodSizes(Path classFile, Map<String, Integer> sizes) throws IOException {
+        String className = classFile.getFileName().toString().replace(".class", "");
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(classFile)))) {
+            in.skipBytes(8);
+            int constantsCount = in.readUnsignedShort();
+            String[] utf8 = new String[constantsCount];
+            for (int i = 1; i < constantsCount; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1: // Utf8
+                        utf8[i] = in.readUTF();
+                        break;
+                    case 5: // Long
+                    case 6: // Double, taking two entries
+                        in.skipBytes(8);
+                        i++;
+                        break;
+                    case 7: // Class
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        in.skipBytes(2);
+                        break;
+                    case 15: // MethodHandle
+                        in.skipBytes(3);
+                        break;
+                    default:
+                        in.skipBytes(4);
+                }
+            }
+            in.skipBytes(6);
+            in.skipBytes(2 * in.readUnsignedShort());
+            int fieldsCount = in.readUnsignedShort();
+            for (int i = 0; i < fieldsCount; i++) {
+                in.skipBytes(6);
+                for (int attributesCount = in.readUnsignedShort(); attributesCount > 0; attributesCount--) {
+                    in.skipBytes(2);
+                    in.skipBytes(in.readInt());
+                }
+            }
+            int methodsCount = in.readUnsignedShort();
+            for (int i = 0; i < methodsCount; i++) {
+                in.skipBytes(2);
+                String method = className + "." + utf8[in.readUnsignedShort()] + utf8[in.readUnsignedShort()];
+                for (int attributesCount = in.readUnsignedShort(); attributesCount > 0; attributesCount--) {
+                    String attribute = utf8[in.readUnsignedShort()];
+                    int length = in.readInt();
+                    if (attribute.equals("Code")) {
+                        in.skipBytes(4);
+                        sizes.put(method, in.readInt());
+                        in.skipBytes(length - 8);
+                    } else {
+                        in.skipBytes(length);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertHelper(String code, String helper) {
+        assertTrue(Pattern.compile("private \\w+ " + helper + "\\(").matcher(code).find(), helper);
+    }
+
+    @Test
+    public void testBaseCommand(@TempDir Path dir) throws Exception {
+        Proto proto = new Proto();
+        ProtoUtil.loadFrom(new File(LightProtoMessageTest.class.getResource("/PulsarApi.proto").toURI()), proto);
+        LightProtoMessage m = new LightProtoMessage(proto.getMessage("BaseCommand"), false);
+        String code = generate(m);
+
+        // The per-field code of the absolute parse methods is over the limit, until it is outlined
+        assertMethodSizes(m);
+        assertHelper(code, "_parse\\w+FieldAt");
+        assertCompiledMethodSizes(dir, proto);
+    }
+
+    private static LightProtoMessage wideMessage(Path dir, String name, int fieldsCount, String field) throws Exception {
+        return new LightProtoMessage(wideProto(dir, name, fieldsCount, field).getMessage(name), false);
+    }
+
+    private static Proto wideProto(Path dir, String name, int fieldsCount, String field) throws Exception {
+        StringBuilder sb = new StringBuilder("syntax = \"proto2\";\npackage lightproto;\nmessage " + name + " {\n");
+        for (int i = 1; i <= fieldsCount; i++) {
+            sb.append(String.format(field, i)).append("\n");
+        }
+        sb.append("}\n");
+        File file = dir.resolve(name + ".proto").toFile();
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        Proto proto = new Proto();
+        ProtoUtil.loadFrom(file, proto);
+        return proto;
+    }
+
+    @Test
+    public void testPackedFields(@TempDir Path dir) throws Exception {
+        // The size and write code of the packed fields is large enough for all the methods to be split
+        Proto proto = wideProto(dir, "Packed", 60, "    repeated int64 f%1$d = %1$d [packed = true];");
+        LightProtoMessage m = new LightProtoMessage(proto.getMessage("Packed"), false);
+        String code = generate(m);
+
+        assertMethodSizes(m);
+        assertHelper(code, "_parse\\w+FieldAt");
+        assertHelper(code, "_parse\\w+Field");
+        assertHelper(code, "_write\\w+Field");
+        assertHelper(code, "_sizeOf\\w+Field");
+        assertCompiledMethodSizes(dir, proto);
+    }
+
+    @Test
+    public void testFieldSetLimit(@TempDir Path dir) throws Exception {
+        String field = "    optional int32 f%1$d = %1$d;";
+        String code = generate(wideMessage(dir, "Max", LightProtoMessage.MAX_FIELD_SET_SIZE, field));
+        assertTrue(code.contains("public static final long FIELD_F64 = 1L << 63;"));
+        assertTrue(code.contains("long _fields"));
+
+        // The messages with more fields have no field set
+        code = generate(wideMessage(dir, "Over", LightProtoMessage.MAX_FIELD_SET_SIZE + 1, field));
+        assertFalse(code.contains("FIELD_F1 "));
+        assertFalse(code.contains("long _fields"));
+    }
+}
@@ -26,6 +26,8 @@ import org.apache.maven.project.MavenProject;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 /**
@@ -45,6 +47,15 @@ public class LightProtoMojo extends AbstractMojo {
     @Parameter(property = "singleOuterClass", defaultValue = "false", required = false)
     private boolean singleOuterClass;
 
+    @Parameter(property = "tableDriven", defaultValue = "false", required = false)
+    private boolean tableDriven;
+
+    @Parameter(property = "unrolledMessages", required = false)
+    private List<String> unrolledMessages;
+
+    @Parameter(property = "copyUnmodifiedFields", defaultValue = "false", required = false)
+    private boolean copyUnmodifiedFields;
+
     @Parameter(property = "sources", required = false)
     private List<File> sources;
 
@@ -59,7 +70,9 @@ public class LightProtoMojo extends AbstractMojo {
 
     private void generate(List<File> protoFiles, File outputDirectory) throws MojoExecutionException {
         try {
-            LightProtoGenerator.generate(protoFiles, outputDirectory, classPrefix, singleOuterClass);
+            LightProtoGenerator.generate(protoFiles, outputDirectory, classPrefix, singleOuterClass, tableDriven,
+                    unrolledMessages == null ? Collections.emptySet() : new HashSet<>(unrolledMessages),
+                    copyUnmodifiedFields);
         } catch (Exception e) {
             getLog().error("Failed to generate lightproto code for " + protoFiles + ": " + e.getMessage(), e);
             throw new MojoExecutionException("Failed to generate lightproto code for " + protoFiles, e);
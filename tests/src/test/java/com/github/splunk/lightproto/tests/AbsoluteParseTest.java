@@ -0,0 +1,232 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AbsoluteParseTest {
+
+    private static AddressBook addressBook(int id) {
+        AddressBook ab = new AddressBook();
+        Person p = ab.addPerson()
+                .setName("name " + id)
+                .setEmail("name" + id + "@example.com")
+                .setId(id);
+        p.addPhone()
+                .setNumber("xxx-zzz-" + id)
+                .setType(Person.PhoneType.WORK);
+        return ab;
+    }
+
+    @Test
+    public void testParseAtOffset() throws Exception {
+        ByteBuf b = Unpooled.buffer();
+        b.writeBytes(new byte[]{1, 2, 3});
+        int size = addressBook(7).writeTo(b);
+        b.writeBytes(new byte[]{4, 5, 6});
+        b.readerIndex(1);
+
+        AddressBook parsed = new AddressBook();
+        parsed.parseFrom(b, 3, size);
+        assertEquals(1, parsed.getPersonsCount());
+        assertEquals("name 7", parsed.getPersonAt(0).getName());
+        assertEquals("name7@example.com", parsed.getPersonAt(0).getEmail());
+        assertEquals(7, parsed.getPersonAt(0).getId());
+        assertEquals(Person.PhoneType.WORK, parsed.getPersonAt(0).getPhoneAt(0).getType());
+        assertArrayEquals(addressBook(7).toByteArray(), parsed.toByteArray());
+
+        // The buffer state is left untouched
+        assertEquals(1, b.readerIndex());
+        assertEquals(size + 6, b.writerIndex());
+    }
+
+    @Test
+    public void testBufferNotStartingAtZero() throws Exception {
+        // The unknown fields and the lazy messages keep ranges of the parsed buffer, which are relative to its start
+        byte[] unknown = UnknownFields.NewVersion.newBuilder()
+                .setName("name")
+                .setId(5)
+                .setTimestamp(123456789L)
+                .setFlags(0xff)
+                .build().toByteArray();
+        byte[] lazy = LazyMessages.LazyM.newBuilder()
+                .setX(LazyMessages.LazyX.newBuilder().setA("x").setN(1))
+                .addItems(LazyMessages.LazyX.newBuilder().setA("item-0"))
+                .build().toByteArray();
+
+        ByteBuf b = Unpooled.buffer();
+        b.writeBytes(new byte[]{1, 2, 3});
+        b.skipBytes(3);
+        b.writeBytes(unknown);
+        b.writeBytes(lazy);
+
+        OldVersion lpo = new OldVersion();
+        lpo.parseFrom(b, unknown.length);
+        LazyM lpl = new LazyM();
+        lpl.parseFrom(b, lazy.length);
+        assertFalse(b.isReadable());
+        assertEquals("name", lpo.getName());
+        assertArrayEquals(unknown, lpo.toByteArray());
+        assertEquals("item-0", lpl.getItemAt(0).getA());
+        assertArrayEquals(lazy, lpl.toByteArray());
+
+        // Same ranges, at absolute indexes
+        lpo.parseFrom(b, 3, unknown.length);
+        lpl.parseFrom(b, 3 + unknown.length, lazy.length);
+        assertArrayEquals(unknown, lpo.toByteArray());
+        assertEquals("x", lpl.getX().getA());
+        assertArrayEquals(lazy, lpl.toByteArray());
+    }
+
+    @Test
+    public void testPaddedVarInts() throws Exception {
+        // Varints encoded with more bytes than their value needs, which are still valid
+        byte[] padded = new byte[]{
+                0x10, (byte) 0x81, 0x00, // x_int64 = 1
+                0x18, (byte) 0x85, (byte) 0x80, 0x00, // x_uint32 = 5
+                0x30, (byte) 0x82, (byte) 0x80, (byte) 0x80, 0x00, // x_sint64 = 1
+                0x20, (byte) 0x80, 0x00, // x_uint64 = 0
+        };
+        NumbersOuterClass.Numbers pbn = NumbersOuterClass.Numbers.parseFrom(padded);
+        byte[] expected = pbn.toByteArray();
+
+        ByteBuf direct = Unpooled.directBuffer();
+        direct.writeBytes(padded);
+        try {
+            for (ByteBuf b : new ByteBuf[]{Unpooled.wrappedBuffer(padded), direct}) {
+                Numbers lpn = new Numbers();
+                lpn.parseFrom(b, 0, padded.length);
+                assertEquals(1, lpn.getXInt64());
+                assertEquals(5, lpn.getXUint32());
+                assertEquals(1, lpn.getXSint64());
+                assertEquals(0, lpn.getXUint64());
+                assertArrayEquals(expected, lpn.toByteArray());
+
+                com.github.splunk.lightproto.tests.table.Numbers tn = new com.github.splunk.lightproto.tests.table.Numbers();
+                tn.parseFrom(b, 0, padded.length);
+                assertEquals(1, tn.getXInt64());
+                assertEquals(1, tn.getXSint64());
+                assertArrayEquals(expected, tn.toByteArray());
+
+                lpn.parseFrom(b, b.readableBytes());
+                assertFalse(b.isReadable());
+                assertEquals(5, lpn.getXUint32());
+                assertArrayEquals(expected, lpn.toByteArray());
+            }
+        } finally {
+            direct.release();
+        }
+    }
+
+    @Test
+    public void testMalformedLengths() throws Exception {
+        byte[] negativeUnknown = new byte[]{(byte) 0xA2, 0x01, (byte) 0xF9, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 0x18, 0x05};
+        byte[] overflowingUnknown = new byte[]{(byte) 0xA2, 0x01, 0x10, 0x18, 0x05};
+        for (byte[] malformed : new byte[][]{negativeUnknown, overflowingUnknown}) {
+            ByteBuf b = Unpooled.wrappedBuffer(malformed);
+            assertThrows(IllegalArgumentException.class, () -> new Numbers().parseFrom(b, 0, malformed.length));
+            assertThrows(IllegalArgumentException.class, () -> new Numbers().parseFrom(b, malformed.length));
+            assertThrows(IllegalArgumentException.class,
+                    () -> new com.github.splunk.lightproto.tests.table.Numbers().parseFrom(b, 0, malformed.length));
+            assertThrows(IllegalArgumentException.class, () -> Numbers.peekXUint32(b, 0, malformed.length, 0));
+        }
+
+        byte[] negativePerson = new byte[]{0x0A, (byte) 0xF9, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 0x0A, 0x00};
+        ByteBuf direct = Unpooled.directBuffer();
+        direct.writeBytes(negativePerson);
+        try {
+            for (ByteBuf b : new ByteBuf[]{Unpooled.wrappedBuffer(negativePerson), direct}) {
+                assertThrows(IllegalArgumentException.class, () -> new AddressBook().parseFrom(b, 0, negativePerson.length));
+            }
+        } finally {
+            direct.release();
+        }
+    }
+
+    @Test
+    public void testConcurrentParsing() throws Exception {
+        int count = 100;
+        ByteBuf b = Unpooled.buffer();
+        int[] offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = b.writerIndex();
+            addressBook(i).writeTo(b);
+        }
+        offsets[count] = b.writerIndex();
+        ByteBuf shared = b.asReadOnly();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    AddressBook parsed = new AddressBook();
+                    for (int i = 0; i < count; i++) {
+                        parsed.parseFrom(shared, offsets[i], offsets[i + 1] - offsets[i]);
+                        assertEquals(i, parsed.getPersonAt(0).getId());
+                        assertEquals("name " + i, parsed.getPersonAt(0).getName());
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, shared.readerIndex());
+    }
+
+    @Test
+    public void testBufferTypes() throws Exception {
+        byte[] serialized = addressBook(3).toByteArray();
+
+        ByteBuf pooledHeap = PooledByteBufAllocator.DEFAULT.heapBuffer();
+        ByteBuf pooledDirect = PooledByteBufAllocator.DEFAULT.directBuffer();
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        composite.addComponent(true, Unpooled.wrappedBuffer(serialized, 0, 10));
+        composite.addComponent(true, Unpooled.wrappedBuffer(serialized, 10, serialized.length - 10));
+
+        try {
+            for (ByteBuf b : new ByteBuf[]{pooledHeap, pooledDirect, composite}) {
+                if (b != composite) {
+                    b.writeBytes(serialized);
+                }
+
+                AddressBook parsed = new AddressBook();
+                parsed.parseFrom(b, b.readableBytes());
+                assertFalse(b.isReadable());
+                assertArrayEquals(serialized, parsed.toByteArray());
+            }
+        } finally {
+            pooledHeap.release();
+            pooledDirect.release();
+            composite.release();
+        }
+    }
+}
@@ -142,4 +142,52 @@ public class BytesTest {
         assertArrayEquals(new byte[]{1, 2, 3}, parsed.getExtraItemAt(0));
         assertArrayEquals(new byte[]{4, 5, 6, 7}, parsed.getExtraItemAt(1));
     }
+
+    @Test
+    public void testBufferNotStartingAtZero() throws Exception {
+        // Only the readable bytes of the added buffers are used
+        ByteBuf payload = Unpooled.wrappedBuffer(new byte[]{9, 9, 1, 2, 3});
+        payload.skipBytes(2);
+        ByteBuf item = Unpooled.buffer();
+        item.writeBytes(new byte[]{9, 4, 5, 6, 7});
+        item.skipBytes(1);
+
+        B lpb = new B().setPayload(payload);
+        lpb.addExtraItem(item);
+        assertEquals(Unpooled.wrappedBuffer(new byte[]{1, 2, 3}), lpb.getPayloadSlice());
+        assertEquals(Unpooled.wrappedBuffer(new byte[]{4, 5, 6, 7}), lpb.getExtraItemSliceAt(0));
+        assertArrayEquals(new byte[]{4, 5, 6, 7}, lpb.getExtraItemAt(0));
+
+        Bytes.B pbb = Bytes.B.newBuilder()
+                .setPayload(ByteString.copyFrom(new byte[]{1, 2, 3}))
+                .addExtraItems(ByteString.copyFrom(new byte[]{4, 5, 6, 7}))
+                .build();
+        assertArrayEquals(pbb.toByteArray(), lpb.toByteArray());
+        assertEquals(2, payload.readerIndex());
+        assertEquals(1, item.readerIndex());
+    }
+
+    @Test
+    public void testWriteToExactSizeBuffer() throws Exception {
+        B lpb = new B();
+        ByteBuf b = Unpooled.directBuffer(3);
+        b.writeBytes(new byte[]{1, 2, 3});
+        lpb.setPayload(b);
+        lpb.addExtraItem(new byte[]{4, 5, 6, 7});
+
+        Bytes.B pbb = Bytes.B.newBuilder()
+                .setPayload(ByteString.copyFrom(new byte[]{1, 2, 3}))
+                .addExtraItems(ByteString.copyFrom(new byte[]{4, 5, 6, 7}))
+                .build();
+        byte[] expected = pbb.toByteArray();
+
+        // The message can be written multiple times, without consuming the payload buffer
+        for (int i = 0; i < 2; i++) {
+            byte[] res = new byte[lpb.getSerializedSize()];
+            ByteBuf rb = Unpooled.wrappedBuffer(res).clear();
+            assertEquals(res.length, lpb.writeTo(rb));
+            assertEquals(res.length, rb.writerIndex());
+            assertArrayEquals(expected, res);
+        }
+    }
 }
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DelimitedTest {
+
+    @Test
+    public void testCompatibleWithProtobuf() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ByteBuf b = Unpooled.buffer();
+        for (int i = 0; i < 3; i++) {
+            AddressBookProtos.Person.newBuilder()
+                    .setName("name " + i)
+                    .setId(i)
+                    .build()
+                    .writeDelimitedTo(os);
+
+            Person p = new Person()
+                    .setName("name " + i)
+                    .setId(i);
+            int n = p.writeDelimitedTo(b);
+            assertEquals(1 + p.getSerializedSize(), n);
+        }
+
+        byte[] res = new byte[b.readableBytes()];
+        b.getBytes(0, res);
+        assertArrayEquals(os.toByteArray(), res);
+
+        Person p = new Person();
+        for (int i = 0; i < 3; i++) {
+            p.parseDelimitedFrom(b);
+            assertEquals("name " + i, p.getName());
+            assertEquals(i, p.getId());
+        }
+        assertEquals(0, b.readableBytes());
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        ByteBuf b = Unpooled.buffer();
+        for (int i = 0; i < 200; i++) {
+            Person p = new Person()
+                    .setName("name " + i)
+                    .setId(i);
+            for (int j = 0; j < i % 3; j++) {
+                p.addPhone().setNumber("xxx-zzz-" + j);
+            }
+            p.writeDelimitedTo(b);
+        }
+
+        Person p = new Person();
+        Iterator<Person> it = p.delimitedIterator(b);
+        int count = 0;
+        while (it.hasNext()) {
+            Person next = it.next();
+            assertSame(p, next);
+            assertEquals("name " + count, next.getName());
+            assertEquals(count, next.getId());
+            assertEquals(count % 3, next.getPhonesCount());
+            count++;
+        }
+
+        assertEquals(200, count);
+        assertThrows(NoSuchElementException.class, it::next);
+    }
+
+    @Test
+    public void testIteratorReset() throws Exception {
+        ByteBuf b1 = Unpooled.buffer();
+        ByteBuf b2 = Unpooled.buffer();
+        for (int i = 0; i < 4; i++) {
+            new Person().setName("name " + i).setId(i).writeDelimitedTo(i < 2 ? b1 : b2);
+        }
+
+        // The iterator is allocated once per message instance, and re-pointed to each buffer
+        Person p = new Person();
+        Person.DelimitedIterator it = p.delimitedIterator(b1);
+        assertEquals(0, it.next().getId());
+        assertEquals(1, it.next().getId());
+        assertFalse(it.hasNext());
+
+        assertSame(it, it.reset(b2));
+        assertEquals(2, it.next().getId());
+        assertSame(it, p.delimitedIterator(b2));
+        assertEquals("name 3", it.next().getName());
+        assertFalse(it.hasNext());
+        assertThrows(NoSuchElementException.class, it::next);
+
+        assertNotSame(it, new Person().delimitedIterator(b2));
+    }
+}
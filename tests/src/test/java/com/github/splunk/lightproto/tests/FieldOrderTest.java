@@ -0,0 +1,139 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import com.google.protobuf.CodedOutputStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FieldOrderTest {
+
+    @Test
+    public void testFieldsOutOfOrder() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        CodedOutputStream cos = CodedOutputStream.newInstance(os);
+        cos.writeBool(13, true);
+        cos.writeSInt64(6, -3);
+        cos.writeInt32(1, 5);
+        cos.writeDouble(12, 2.5);
+        // Duplicated singular field, the last occurrence wins
+        cos.writeInt32(1, 7);
+        cos.flush();
+
+        Numbers lpn = new Numbers();
+        lpn.parseFrom(os.toByteArray());
+        assertTrue(lpn.isXBool());
+        assertEquals(-3, lpn.getXSint64());
+        assertEquals(7, lpn.getXInt32());
+        assertEquals(2.5, lpn.getXDouble());
+        assertFalse(lpn.hasXInt64());
+    }
+
+    @Test
+    public void testFieldsInOrderWithUnknownFields() throws Exception {
+        // All the fields in order, the ones past the unknown field being expected as well
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        CodedOutputStream cos = CodedOutputStream.newInstance(os);
+        cos.writeInt32(1, 1);
+        cos.writeInt64(2, 2);
+        cos.writeUInt32(100, 100);
+        cos.writeUInt32(3, 3);
+        cos.writeUInt64(4, 4);
+        cos.writeSInt32(5, 5);
+        cos.writeSInt64(6, 6);
+        cos.writeFixed32(7, 7);
+        cos.writeFixed64(8, 8);
+        cos.writeSFixed32(9, 9);
+        cos.writeSFixed64(10, 10);
+        cos.writeFloat(11, 11);
+        cos.writeDouble(12, 12);
+        cos.writeBool(13, true);
+        cos.writeEnum(14, NumbersOuterClass.Enum1.X1_1_VALUE);
+        cos.writeEnum(15, NumbersOuterClass.Numbers.Enum2.X2_2_VALUE);
+        cos.flush();
+        byte[] serialized = os.toByteArray();
+
+        byte[] expected = NumbersOuterClass.Numbers.parseFrom(serialized).toByteArray();
+        for (ByteBuf b : buffers(serialized)) {
+            Numbers lpn = new Numbers();
+            lpn.parseFrom(b, 0, serialized.length);
+            assertEquals(3, lpn.getXUint32());
+            assertEquals(12.0, lpn.getXDouble());
+            assertEquals(Numbers.Enum2.X2_2, lpn.getEnum2());
+            assertTrue(lpn.hasUnknownFields());
+            assertArrayEquals(expected, lpn.toByteArray());
+        }
+    }
+
+    @Test
+    public void testPackedFieldsNotPacked() throws Exception {
+        // The fields declared packed, written unpacked and then packed
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        CodedOutputStream cos = CodedOutputStream.newInstance(os);
+        cos.writeInt64(2, 1);
+        cos.writeInt64(2, 2);
+        cos.writeUInt32(3, 3);
+        cos.writeTag(3, 2);
+        cos.writeUInt32NoTag(2);
+        cos.writeUInt32NoTag(4);
+        cos.writeUInt32NoTag(5);
+        cos.flush();
+        byte[] serialized = os.toByteArray();
+
+        for (ByteBuf b : buffers(serialized)) {
+            RepeatedPacked lpr = new RepeatedPacked();
+            lpr.parseFrom(b, 0, serialized.length);
+            assertEquals(2, lpr.getXInt64sCount());
+            assertEquals(2, lpr.getXInt64At(1));
+            assertEquals(3, lpr.getXUint32sCount());
+            assertEquals(5, lpr.getXUint32At(2));
+        }
+    }
+
+    private static ByteBuf[] buffers(byte[] serialized) {
+        // The absolute parsing has its own code for the heap buffers, walking their backing array
+        ByteBuf direct = Unpooled.directBuffer(serialized.length);
+        direct.writeBytes(serialized);
+        return new ByteBuf[]{Unpooled.wrappedBuffer(serialized), direct};
+    }
+
+    @Test
+    public void testRepeatedFieldsInterleaved() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        CodedOutputStream cos = CodedOutputStream.newInstance(os);
+        cos.writeInt32(1, 1);
+        cos.writeInt32(1, 2);
+        cos.writeInt64(2, 10);
+        cos.writeInt32(1, 3);
+        cos.writeInt64(2, 20);
+        cos.flush();
+
+        Repeated lpr = new Repeated();
+        lpr.parseFrom(os.toByteArray());
+        assertEquals(3, lpr.getXInt32sCount());
+        assertEquals(1, lpr.getXInt32At(0));
+        assertEquals(2, lpr.getXInt32At(1));
+        assertEquals(3, lpr.getXInt32At(2));
+        assertEquals(2, lpr.getXInt64sCount());
+        assertEquals(10, lpr.getXInt64At(0));
+        assertEquals(20, lpr.getXInt64At(1));
+    }
+}
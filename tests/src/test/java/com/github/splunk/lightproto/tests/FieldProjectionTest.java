@@ -0,0 +1,195 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FieldProjectionTest {
+
+    @Test
+    public void testSingularFields() throws Exception {
+        byte[] serialized = NumbersOuterClass.Numbers.newBuilder()
+                .setXInt32(1)
+                .setXInt64(2)
+                .setXFixed64(3)
+                .setXDouble(4.0)
+                .setEnum2(NumbersOuterClass.Numbers.Enum2.X2_2)
+                .build().toByteArray();
+
+        ByteBuf b = Unpooled.wrappedBuffer(serialized);
+        Numbers lpn = new Numbers();
+        lpn.parseFrom(b, b.readableBytes(), Numbers.FIELD_X_INT64 | Numbers.FIELD_X_DOUBLE);
+
+        // The other fields are skipped
+        assertEquals(0, b.readableBytes());
+        assertFalse(lpn.hasXInt32());
+        assertTrue(lpn.hasXInt64());
+        assertEquals(2, lpn.getXInt64());
+        assertFalse(lpn.hasXFixed64());
+        assertTrue(lpn.hasXDouble());
+        assertEquals(4.0, lpn.getXDouble());
+        assertFalse(lpn.hasEnum2());
+    }
+
+    @Test
+    public void testDuplicatedFields() throws Exception {
+        // Concatenated messages are merged, the last occurrence of a singular field wins
+        byte[] first = NumbersOuterClass.Numbers.newBuilder().setXInt32(1).setXInt64(2).build().toByteArray();
+        byte[] second = NumbersOuterClass.Numbers.newBuilder().setXInt64(5).build().toByteArray();
+        ByteBuf b = Unpooled.buffer();
+        b.writeBytes(first);
+        b.writeBytes(second);
+
+        Numbers lpn = new Numbers();
+        lpn.parseFrom(b, b.readableBytes(), Numbers.FIELD_X_INT64);
+        assertEquals(0, b.readableBytes());
+        assertEquals(5, lpn.getXInt64());
+        assertFalse(lpn.hasXInt32());
+
+        byte[] m1 = Messages.M.newBuilder().setX(Messages.X.newBuilder().setA("a")).build().toByteArray();
+        byte[] m2 = Messages.M.newBuilder().setX(Messages.X.newBuilder().setA("b")).build().toByteArray();
+        b = Unpooled.buffer();
+        b.writeBytes(m1);
+        b.writeBytes(m2);
+        M lpm = new M();
+        lpm.parseFrom(b, b.readableBytes(), M.FIELD_X);
+        assertEquals("b", lpm.getX().getA());
+    }
+
+    @Test
+    public void testFieldsOnce() throws Exception {
+        byte[] serialized = NumbersOuterClass.Numbers.newBuilder().setXInt32(1).setXInt64(2).build().toByteArray();
+        ByteBuf b = Unpooled.buffer();
+        b.writeBytes(serialized);
+        b.writeByte(0x0F); // Invalid wire type
+
+        Numbers lpn = new Numbers();
+        assertThrows(IllegalArgumentException.class, () -> lpn.parseFrom(b, b.readableBytes(), Numbers.FIELD_X_INT64));
+
+        // When each field occurs once, the rest of the message is not read after the requested fields
+        b.readerIndex(0);
+        assertTrue(lpn.parseFrom(b, b.readableBytes(), Numbers.FIELD_X_INT64, 0L, null, true));
+        assertEquals(0, b.readableBytes());
+        assertEquals(2, lpn.getXInt64());
+        assertFalse(lpn.hasXInt32());
+    }
+
+    @Test
+    public void testRepeatedFields() throws Exception {
+        byte[] serialized = Messages.M.newBuilder()
+                .setX(Messages.X.newBuilder().setA("a"))
+                .addItems(Messages.M.KV.newBuilder().setK("k1").setV("v1"))
+                .addItems(Messages.M.KV.newBuilder().setK("k2").setV("v2"))
+                .build().toByteArray();
+
+        M lpm = new M();
+        lpm.parseFrom(Unpooled.wrappedBuffer(serialized), serialized.length, M.FIELD_ITEMS);
+        assertFalse(lpm.hasX());
+        assertEquals(2, lpm.getItemsCount());
+        assertEquals("k2", lpm.getItemAt(1).getK());
+
+        lpm.parseFrom(Unpooled.wrappedBuffer(serialized), serialized.length, M.FIELD_X);
+        assertTrue(lpm.hasX());
+        assertEquals("a", lpm.getX().getA());
+        assertEquals(0, lpm.getItemsCount());
+    }
+
+    @Test
+    public void testRequiredFields() throws Exception {
+        byte[] serialized = Required.NR.newBuilder()
+                .setB(2)
+                .build().toByteArray();
+
+        // Required fields are only checked when requested
+        R lpr = new R();
+        lpr.parseFrom(Unpooled.wrappedBuffer(serialized), serialized.length, R.FIELD_B);
+        assertEquals(2, lpr.getB());
+
+        try {
+            lpr.parseFrom(Unpooled.wrappedBuffer(serialized), serialized.length, R.FIELD_A | R.FIELD_B);
+            fail("Should have failed");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        byte[] serialized = NumbersOuterClass.Numbers.newBuilder()
+                .setXInt32(1)
+                .setXInt64(2)
+                .setXDouble(4.0)
+                .build().toByteArray();
+
+        Numbers lpn = new Numbers();
+        ByteBuf b = Unpooled.wrappedBuffer(serialized);
+        assertTrue(lpn.parseFrom(b, b.readableBytes(), Numbers.ALL_FIELDS, Numbers.FIELD_X_INT32, n -> n.getXInt32() == 1));
+        assertEquals(0, b.readableBytes());
+        assertEquals(2, lpn.getXInt64());
+        assertEquals(4.0, lpn.getXDouble());
+
+        // When each field occurs once, parsing is aborted right after the filtered field
+        b = Unpooled.wrappedBuffer(serialized);
+        assertFalse(lpn.parseFrom(b, b.readableBytes(), Numbers.ALL_FIELDS, Numbers.FIELD_X_INT32, n -> n.getXInt32() == 5, true));
+        assertEquals(0, b.readableBytes());
+        assertTrue(lpn.hasXInt32());
+        assertFalse(lpn.hasXInt64());
+
+        // Otherwise, once the message is parsed
+        b = Unpooled.wrappedBuffer(serialized);
+        assertFalse(lpn.parseFrom(b, b.readableBytes(), Numbers.ALL_FIELDS, Numbers.FIELD_X_INT32, n -> n.getXInt32() == 5));
+        assertEquals(0, b.readableBytes());
+        assertTrue(lpn.hasXInt64());
+
+        // Missing fields are rejected by the filter once the message is parsed
+        b = Unpooled.wrappedBuffer(serialized);
+        assertFalse(lpn.parseFrom(b, b.readableBytes(), 0L, Numbers.FIELD_X_UINT32, Numbers::hasXUint32));
+    }
+
+    @Test
+    public void testFilterFields() throws Exception {
+        // Written by decreasing field number, with the last value of x_int32 matching
+        ByteBuf b = Unpooled.buffer();
+        b.writeBytes(NumbersOuterClass.Numbers.newBuilder().setXInt32(5).build().toByteArray());
+        b.writeBytes(NumbersOuterClass.Numbers.newBuilder().setXInt64(2).setXDouble(4.0).build().toByteArray());
+        b.writeBytes(NumbersOuterClass.Numbers.newBuilder().setXInt32(1).build().toByteArray());
+        long filterFields = Numbers.FIELD_X_INT32 | Numbers.FIELD_X_INT64;
+
+        // The filter sees all its fields, with their last value
+        Numbers lpn = new Numbers();
+        assertTrue(lpn.parseFrom(b, b.readableBytes(), Numbers.FIELD_X_DOUBLE, filterFields,
+                n -> n.hasXInt32() && n.getXInt32() == 1 && n.hasXInt64() && n.getXInt64() == 2));
+        assertEquals(0, b.readableBytes());
+        assertEquals(4.0, lpn.getXDouble());
+
+        b.readerIndex(0);
+        assertFalse(lpn.parseFrom(b, b.readableBytes(), Numbers.FIELD_X_DOUBLE, filterFields,
+                n -> n.hasXInt32() && n.getXInt32() == 5));
+        assertEquals(0, b.readableBytes());
+
+        // When each field occurs once, the filter is evaluated as soon as all its fields were seen
+        ByteBuf once = Unpooled.buffer();
+        once.writeBytes(NumbersOuterClass.Numbers.newBuilder().setXInt64(2).build().toByteArray());
+        once.writeBytes(NumbersOuterClass.Numbers.newBuilder().setXInt32(1).build().toByteArray());
+        assertTrue(lpn.parseFrom(once, once.readableBytes(), 0L, filterFields,
+                n -> n.hasXInt32() && n.hasXInt64(), true));
+        assertEquals(0, once.readableBytes());
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalParseTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 7, 64, 100000})
+    public void testFragmentedInput(int fragmentSize) throws Exception {
+        AddressBook source = new AddressBook();
+        for (int i = 0; i < 10; i++) {
+            source.addPerson()
+                    .setName("name " + i)
+                    .setEmail("name" + i + "@example.com")
+                    .setId(i)
+                    .addPhone()
+                    .setNumber("xxx-zzz-" + i)
+                    .setType(Person.PhoneType.WORK);
+        }
+        byte[] serialized = source.toByteArray();
+        ByteBuf b = Unpooled.buffer(serialized.length);
+
+        AddressBook ab = new AddressBook();
+        int status = AddressBook.PARSE_NEED_MORE;
+        for (int i = 0; i < serialized.length; i += fragmentSize) {
+            assertEquals(AddressBook.PARSE_NEED_MORE, status);
+            b.writeBytes(serialized, i, Math.min(fragmentSize, serialized.length - i));
+            status = ab.parseIncrementally(b, serialized.length);
+        }
+
+        assertEquals(AddressBook.PARSE_DONE, status);
+        assertEquals(0, b.readableBytes());
+        assertEquals(10, ab.getPersonsCount());
+        assertEquals("name 9", ab.getPersonAt(9).getName());
+        assertEquals("xxx-zzz-9", ab.getPersonAt(9).getPhoneAt(0).getNumber());
+        assertArrayEquals(serialized, ab.toByteArray());
+    }
+
+    @Test
+    public void testCompositeFragments() throws Exception {
+        AddressBook source = new AddressBook();
+        source.addPerson().setName("name").setId(1).addPhone().setNumber("xxx-zzz");
+        source.addPerson().setName(String.join("", Collections.nCopies(1000, "x"))).setId(2);
+        byte[] serialized = source.toByteArray();
+
+        // Each fragment is added as a component, without copy, the large person being complete with the last one
+        CompositeByteBuf b = Unpooled.compositeBuffer();
+        AddressBook ab = new AddressBook();
+        int status = AddressBook.PARSE_NEED_MORE;
+        for (int i = 0; i < serialized.length; i += 100) {
+            assertEquals(AddressBook.PARSE_NEED_MORE, status);
+            b.addComponent(true, Unpooled.wrappedBuffer(serialized, i, Math.min(100, serialized.length - i)));
+            status = ab.parseIncrementally(b, serialized.length);
+            if (i + 100 < serialized.length) {
+                assertEquals(1, ab.getPersonsCount());
+            }
+        }
+
+        assertEquals(AddressBook.PARSE_DONE, status);
+        assertEquals(2, ab.getPersonsCount());
+        assertEquals("xxx-zzz", ab.getPersonAt(0).getPhoneAt(0).getNumber());
+        assertEquals(1000, ab.getPersonAt(1).getName().length());
+        assertArrayEquals(serialized, ab.toByteArray());
+        b.release();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100})
+    public void testTruncatedInput(int missingBytes) throws Exception {
+        AddressBook source = new AddressBook();
+        for (int i = 0; i < 10; i++) {
+            source.addPerson().setName("name " + i).setId(i);
+        }
+        byte[] serialized = source.toByteArray();
+        ByteBuf b = Unpooled.wrappedBuffer(serialized, 0, serialized.length - missingBytes);
+
+        AddressBook ab = new AddressBook();
+        assertEquals(AddressBook.PARSE_NEED_MORE, ab.parseIncrementally(b, serialized.length));
+
+        // The message is declared shorter than its last field
+        ab.clear();
+        b = Unpooled.wrappedBuffer(serialized);
+        assertEquals(AddressBook.PARSE_ERROR, ab.parseIncrementally(b, serialized.length - missingBytes));
+    }
+
+    @Test
+    public void testMissingRequiredFields() throws Exception {
+        byte[] serialized = AddressBookProtos.Person.newBuilder().setName("name").buildPartial().toByteArray();
+
+        Person p = new Person();
+        assertEquals(Person.PARSE_ERROR, p.parseIncrementally(Unpooled.wrappedBuffer(serialized), serialized.length));
+    }
+
+    @Test
+    public void testTruncatedNestedMessage() throws Exception {
+        Person p = new Person().setName("name").setId(1);
+        p.addPhone().setNumber("xxx-zzz").setType(Person.PhoneType.WORK);
+        byte[] person = p.toByteArray();
+
+        // The person is declared shorter than its content, cutting its phone number
+        ByteBuf b = Unpooled.buffer();
+        b.writeByte(0x0A);
+        b.writeByte(person.length - 3);
+        b.writeBytes(person, 0, person.length - 3);
+
+        AddressBook ab = new AddressBook();
+        assertEquals(AddressBook.PARSE_ERROR, ab.parseIncrementally(b, b.readableBytes()));
+
+        // The message can be parsed again after an error
+        b = Unpooled.buffer();
+        b.writeByte(0x0A);
+        b.writeByte(person.length);
+        b.writeBytes(person);
+        assertEquals(AddressBook.PARSE_DONE, ab.parseIncrementally(b, b.readableBytes()));
+        assertEquals("xxx-zzz", ab.getPersonAt(0).getPhoneAt(0).getNumber());
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.pulsar.common.api.proto.BaseCommand;
+import org.apache.pulsar.common.api.proto.PulsarApi;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BaseCommand has enough fields for the per-field code of its generated methods to be outlined into helpers.
+ */
+public class LargeMessagesTest {
+
+    private static BaseCommand command() {
+        BaseCommand cmd = new BaseCommand().setType(BaseCommand.Type.SEND);
+        cmd.setSend()
+                .setProducerId(1)
+                .setSequenceId(2)
+                .setNumMessages(3);
+        cmd.setFlow()
+                .setConsumerId(4)
+                .setMessagePermits(1000);
+        cmd.setAckResponse()
+                .setConsumerId(5)
+                .setMessage("ack");
+        return cmd;
+    }
+
+    private static void assertCommand(BaseCommand cmd) {
+        assertEquals(BaseCommand.Type.SEND, cmd.getType());
+        assertEquals(1, cmd.getSend().getProducerId());
+        assertEquals(2, cmd.getSend().getSequenceId());
+        assertEquals(3, cmd.getSend().getNumMessages());
+        assertEquals(4, cmd.getFlow().getConsumerId());
+        assertEquals(1000, cmd.getFlow().getMessagePermits());
+        assertEquals(5, cmd.getAckResponse().getConsumerId());
+        assertEquals("ack", cmd.getAckResponse().getMessage());
+        assertFalse(cmd.hasConnect());
+        assertFalse(cmd.hasAck());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        BaseCommand cmd = command();
+        byte[] serialized = cmd.toByteArray();
+        assertEquals(serialized.length, cmd.getSerializedSize());
+
+        PulsarApi.BaseCommand pbCmd = PulsarApi.BaseCommand.parseFrom(serialized);
+        assertEquals(PulsarApi.BaseCommand.Type.SEND, pbCmd.getType());
+        assertEquals(1, pbCmd.getSend().getProducerId());
+        assertEquals(1000, pbCmd.getFlow().getMessagePermits());
+        assertEquals("ack", pbCmd.getAckResponse().getMessage());
+        assertArrayEquals(pbCmd.toByteArray(), serialized);
+
+        BaseCommand parsed = new BaseCommand();
+        parsed.parseFrom(serialized);
+        assertCommand(parsed);
+
+        ByteBuf direct = Unpooled.directBuffer(serialized.length).writeBytes(serialized);
+        parsed.parseFrom(direct, direct.readableBytes());
+        assertCommand(parsed);
+
+        parsed.parseFrom(Unpooled.wrappedBuffer(serialized), serialized.length, BaseCommand.ALL_FIELDS);
+        assertCommand(parsed);
+
+        BaseCommand copy = new BaseCommand().copyFrom(cmd);
+        assertCommand(copy);
+        assertArrayEquals(serialized, copy.toByteArray());
+    }
+}
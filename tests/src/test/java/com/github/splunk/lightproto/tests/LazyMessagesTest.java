@@ -0,0 +1,139 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazyMessagesTest {
+
+    @Test
+    public void testUntouchedFieldsAreCopied() throws Exception {
+        byte[] serialized = LazyMessages.LazyM.newBuilder()
+                .setId(7)
+                .setX(LazyMessages.LazyX.newBuilder().setA("x").setN(1))
+                .addItems(LazyMessages.LazyX.newBuilder().setA("item-0"))
+                .build().toByteArray();
+
+        LazyM lpm = new LazyM();
+        lpm.parseFrom(serialized);
+
+        assertEquals(serialized.length, lpm.getSerializedSize());
+        assertArrayEquals(serialized, lpm.toByteArray());
+        assertEquals(7, lpm.getId());
+    }
+
+    @Test
+    public void testParseOnAccess() throws Exception {
+        byte[] serialized = LazyMessages.LazyM.newBuilder()
+                .setX(LazyMessages.LazyX.newBuilder().setA("x").setN(1))
+                .addItems(LazyMessages.LazyX.newBuilder().setA("item-0"))
+                .addItems(LazyMessages.LazyX.newBuilder().setA("item-1").setN(-5))
+                .build().toByteArray();
+
+        LazyM lpm = new LazyM();
+        lpm.parseFrom(serialized);
+
+        assertTrue(lpm.hasX());
+        assertEquals("x", lpm.getX().getA());
+        assertEquals(1, lpm.getX().getN());
+        assertEquals(2, lpm.getItemsCount());
+        assertEquals("item-1", lpm.getItemAt(1).getA());
+        assertEquals(-5, lpm.getItemAt(1).getN());
+        assertEquals("item-0", lpm.getItemsList().get(0).getA());
+        assertFalse(lpm.getItemAt(0).hasN());
+
+        assertArrayEquals(serialized, lpm.toByteArray());
+    }
+
+    @Test
+    public void testForEach() throws Exception {
+        LazyM lpm = new LazyM();
+        lpm.parseFrom(LazyMessages.LazyM.newBuilder()
+                .addItems(LazyMessages.LazyX.newBuilder().setA("item-0"))
+                .addItems(LazyMessages.LazyX.newBuilder().setA("item-1"))
+                .build().toByteArray());
+
+        // Items are parsed as they are visited
+        List<String> names = new ArrayList<>();
+        lpm.forEachItem(item -> names.add(item.getA()));
+        assertEquals(Arrays.asList("item-0", "item-1"), names);
+    }
+
+    @Test
+    public void testMutations() throws Exception {
+        LazyMessages.LazyM.Builder pbm = LazyMessages.LazyM.newBuilder()
+                .setX(LazyMessages.LazyX.newBuilder().setA("x"))
+                .addItems(LazyMessages.LazyX.newBuilder().setA("item-0"));
+
+        LazyM lpm = new LazyM();
+        lpm.parseFrom(pbm.build().toByteArray());
+        int size = lpm.getSerializedSize();
+
+        // Only the first item and the singular field are parsed and modified, the other items are copied
+        lpm.getItemAt(0).setN(3);
+        lpm.setX().setA("xxx");
+        lpm.addItem().setA("item-1");
+        assertNotEquals(size, lpm.getSerializedSize());
+
+        pbm.getItemsBuilder(0).setN(3);
+        pbm.getXBuilder().setA("xxx");
+        pbm.addItems(LazyMessages.LazyX.newBuilder().setA("item-1"));
+        byte[] expected = pbm.build().toByteArray();
+
+        assertEquals(expected.length, lpm.getSerializedSize());
+        assertArrayEquals(expected, lpm.toByteArray());
+    }
+
+    @Test
+    public void testMutationsAfterCopy() throws Exception {
+        LazyMessages.LazyM pbm = LazyMessages.LazyM.newBuilder()
+                .setX(LazyMessages.LazyX.newBuilder().setA("x"))
+                .addItems(LazyMessages.LazyX.newBuilder().setA("item-0"))
+                .addItems(LazyMessages.LazyX.newBuilder().setA("item-1"))
+                .build();
+        byte[] serialized = pbm.toByteArray();
+
+        // Copied while the children are still unparsed
+        LazyM lpm = new LazyM();
+        lpm.parseFrom(serialized);
+        LazyM copy = new LazyM().copyFrom(lpm);
+        assertArrayEquals(serialized, copy.toByteArray());
+
+        copy.getX().setN(1);
+        copy.getItemAt(1).setA("copy-1");
+        lpm.getItemAt(0).setA("original-0");
+
+        assertEquals("x", lpm.getX().getA());
+        assertFalse(lpm.getX().hasN());
+        assertEquals("item-1", lpm.getItemAt(1).getA());
+        assertEquals("item-0", copy.getItemAt(0).getA());
+
+        LazyMessages.LazyM.Builder expectedCopy = pbm.toBuilder();
+        expectedCopy.getXBuilder().setN(1);
+        expectedCopy.getItemsBuilder(1).setA("copy-1");
+        assertArrayEquals(expectedCopy.build().toByteArray(), copy.toByteArray());
+
+        LazyMessages.LazyM.Builder expected = pbm.toBuilder();
+        expected.getItemsBuilder(0).setA("original-0");
+        assertArrayEquals(expected.build().toByteArray(), lpm.toByteArray());
+    }
+}
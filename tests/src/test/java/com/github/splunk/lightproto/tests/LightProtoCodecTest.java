@@ -20,6 +20,7 @@ import com.google.protobuf.CodedOutputStream;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
@@ -27,6 +28,10 @@ import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class LightProtoCodecTest {
 
@@ -43,6 +48,7 @@ public class LightProtoCodecTest {
     @ValueSource(ints = {Integer.MIN_VALUE, -1000, -100, -2, -1, 0, 1, 10, 100, 1000, (int) 1e4, (int) 1e5, (int) 1e7, Integer.MAX_VALUE})
     public void testVarInt(int i) throws Exception {
         LightProtoCodec.writeVarInt(bb, i);
+        assertEquals(LightProtoCodec.computeVarIntSize(i), bb.readableBytes());
 
         CodedInputStream is = CodedInputStream.newInstance(b);
         int res = is.readRawVarint32();
@@ -58,6 +64,7 @@ public class LightProtoCodecTest {
     @ValueSource(longs = {Long.MIN_VALUE, -10000000, -100, -2, -1, 0, 1, 10, 100, 10000000, (long) 2e18, (long) 2e32, (long) 2e43, (long) 2e57, Long.MAX_VALUE})
     public void testVarInt64(long i) throws Exception {
         LightProtoCodec.writeVarInt64(bb, i);
+        assertEquals(LightProtoCodec.computeVarInt64Size(i), bb.readableBytes());
 
         CodedInputStream is = CodedInputStream.newInstance(b);
         long res = is.readRawVarint64();
@@ -69,10 +76,58 @@ public class LightProtoCodecTest {
         assertEquals(CodedOutputStream.computeInt64SizeNoTag(i), LightProtoCodec.computeVarInt64Size(i));
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {Integer.MIN_VALUE, -1000, -100, -2, -1, 0, 1, 10, 100, 1000, (int) 1e4, (int) 1e5, (int) 1e7, Integer.MAX_VALUE})
+    public void testVarIntWithTrailingData(int i) throws Exception {
+        for (ByteBuf buf : new ByteBuf[]{Unpooled.buffer(), Unpooled.directBuffer()}) {
+            LightProtoCodec.writeVarInt(buf, i);
+            int size = buf.readableBytes();
+            for (int j = 0; j < 10; j++) {
+                buf.writeByte(0xFF);
+            }
+
+            assertEquals(i, LightProtoCodec.readVarInt(buf));
+            assertEquals(size, buf.readerIndex());
+            buf.release();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {Integer.MIN_VALUE, -1000, -100, -2, -1, 0, 1, 10, 100, 1000, (int) 1e4, (int) 1e5, (int) 1e7, Integer.MAX_VALUE})
+    public void testVarIntAndIdx(int i) throws Exception {
+        bb.writeByte(0xFF);
+        LightProtoCodec.writeVarInt(bb, i);
+        for (int j = 0; j < 10; j++) {
+            bb.writeByte(0xFF);
+        }
+
+        long expected = (long) (1 + LightProtoCodec.computeVarIntSize(i)) << 32 | i & 0xFFFFFFFFL;
+        assertEquals(expected, LightProtoCodec.getVarIntAndIdx(b, 1));
+        assertEquals(expected, LightProtoCodec.getVarIntAndIdx(bb, 1));
+        assertEquals(0, bb.readerIndex());
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {Long.MIN_VALUE, -10000000, -100, -2, -1, 0, 1, 10, 100, 10000000, (long) 2e18, (long) 2e32, (long) 2e43, (long) 2e57, Long.MAX_VALUE})
+    public void testVarInt64WithTrailingData(long i) throws Exception {
+        for (ByteBuf buf : new ByteBuf[]{Unpooled.buffer(), Unpooled.directBuffer()}) {
+            LightProtoCodec.writeVarInt64(buf, i);
+            int size = buf.readableBytes();
+            for (int j = 0; j < 10; j++) {
+                buf.writeByte(0xFF);
+            }
+
+            assertEquals(i, LightProtoCodec.readVarInt64(buf));
+            assertEquals(size, buf.readerIndex());
+            buf.release();
+        }
+    }
+
     @ParameterizedTest
     @ValueSource(ints = {Integer.MIN_VALUE, -1000, -100, -2, -1, 0, 1, 10, 100, 1000, Integer.MAX_VALUE})
     public void testSignedVarInt(int i) throws Exception {
         LightProtoCodec.writeSignedVarInt(bb, i);
+        assertEquals(LightProtoCodec.computeSignedVarIntSize(i), bb.readableBytes());
 
         CodedInputStream is = CodedInputStream.newInstance(b);
         int res = is.readSInt32();
@@ -88,6 +143,7 @@ public class LightProtoCodecTest {
     @ValueSource(longs = {Long.MIN_VALUE, -10000000, -100, -2, -1, 0, 1, 10, 100, 10000000, Long.MAX_VALUE})
     public void testSignedVarInt64(long i) throws Exception {
         LightProtoCodec.writeSignedVarInt64(bb, i);
+        assertEquals(LightProtoCodec.computeSignedVarInt64Size(i), bb.readableBytes());
 
         CodedInputStream is = CodedInputStream.newInstance(b);
         long res = is.readSInt64();
@@ -151,6 +207,56 @@ public class LightProtoCodecTest {
         assertEquals(i, res);
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {1, 15, 16, 2047, 2048, 262143, 262144, 33554431, 33554432})
+    public void testTagAndValue(int fieldNumber) throws Exception {
+        int varIntTag = (fieldNumber << LightProtoCodec.TAG_TYPE_BITS) | LightProtoCodec.WIRETYPE_VARINT;
+        int fixed32Tag = (fieldNumber << LightProtoCodec.TAG_TYPE_BITS) | LightProtoCodec.WIRETYPE_FIXED32;
+        int fixed64Tag = (fieldNumber << LightProtoCodec.TAG_TYPE_BITS) | LightProtoCodec.WIRETYPE_FIXED64;
+
+        int idx = 0;
+        idx = LightProtoCodec.setTagAndVarInt(bb, idx, LightProtoCodec.encodeTag(varIntTag), LightProtoCodec.computeVarIntSize(varIntTag), 5);
+        idx = LightProtoCodec.setTagAndVarInt(bb, idx, LightProtoCodec.encodeTag(varIntTag), LightProtoCodec.computeVarIntSize(varIntTag), -5);
+        idx = LightProtoCodec.setTagAndVarInt64(bb, idx, LightProtoCodec.encodeTag(varIntTag), LightProtoCodec.computeVarIntSize(varIntTag), 1234567890123L);
+        idx = LightProtoCodec.setTagAndSignedVarInt(bb, idx, LightProtoCodec.encodeTag(varIntTag), LightProtoCodec.computeVarIntSize(varIntTag), Integer.MIN_VALUE);
+        idx = LightProtoCodec.setTagAndFixedInt32(bb, idx, LightProtoCodec.encodeTag(fixed32Tag), LightProtoCodec.computeVarIntSize(fixed32Tag), 0x12345678);
+        idx = LightProtoCodec.setTagAndFixedInt64(bb, idx, LightProtoCodec.encodeTag(fixed64Tag), LightProtoCodec.computeVarIntSize(fixed64Tag), 0x123456789ABCDEFL);
+        idx = LightProtoCodec.setTagAndDouble(bb, idx, LightProtoCodec.encodeTag(fixed64Tag), LightProtoCodec.computeVarIntSize(fixed64Tag), 3.14);
+
+        bb.writerIndex(idx);
+
+        CodedInputStream is = CodedInputStream.newInstance(b, 0, bb.readableBytes());
+        assertEquals(varIntTag, is.readTag());
+        assertEquals(5, is.readInt32());
+        assertEquals(varIntTag, is.readTag());
+        assertEquals(-5, is.readInt32());
+        assertEquals(varIntTag, is.readTag());
+        assertEquals(1234567890123L, is.readInt64());
+        assertEquals(varIntTag, is.readTag());
+        assertEquals(Integer.MIN_VALUE, is.readSInt32());
+        assertEquals(fixed32Tag, is.readTag());
+        assertEquals(0x12345678, is.readFixed32());
+        assertEquals(fixed64Tag, is.readTag());
+        assertEquals(0x123456789ABCDEFL, is.readFixed64());
+        assertEquals(fixed64Tag, is.readTag());
+        assertEquals(3.14, is.readDouble());
+        assertTrue(is.isAtEnd());
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1L << 28, 1L << 35, 1L << 42, 1L << 49})
+    public void testSetVarIntDoesNotWritePastValue(long i) throws Exception {
+        Arrays.fill(b, (byte) 0xFF);
+        int size = LightProtoCodec.computeVarInt64Size(i);
+        assertEquals(size, LightProtoCodec.setVarInt64(bb, 0, i));
+        for (int j = size; j < 16; j++) {
+            assertEquals((byte) 0xFF, b[j]);
+        }
+
+        bb.writerIndex(size);
+        assertEquals(i, LightProtoCodec.readVarInt64(bb));
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"hello", "UTF16 Ελληνικά Русский 日本語", "Neque porro quisquam est qui dolorem ipsum"})
     public void testString(String s) throws Exception {
@@ -169,4 +275,35 @@ public class LightProtoCodecTest {
 
         assertEquals(CodedOutputStream.computeStringSizeNoTag(s), LightProtoCodec.computeVarIntSize(sb.length) + LightProtoCodec.computeStringUTF8Size(s));
     }
+
+    @Test
+    public void testGrow() {
+        int[] a = LightProtoCodec.grow((int[]) null, 1);
+        assertEquals(4, a.length);
+        a[3] = 7;
+        a = LightProtoCodec.grow(a, 5);
+        assertEquals(8, a.length);
+        assertEquals(7, a[3]);
+        assertEquals(20, LightProtoCodec.grow(a, 20).length);
+
+        Enum1[] e = LightProtoCodec.grow(null, 1, Enum1.class);
+        assertEquals(4, e.length);
+        e[0] = Enum1.X1_2;
+        e = LightProtoCodec.grow(e, 5, Enum1.class);
+        assertEquals(8, e.length);
+        assertSame(Enum1.X1_2, e[0]);
+        assertNull(e[4]);
+    }
+
+    @Test
+    public void testAccessorExceptions() {
+        Numbers n = new Numbers();
+        IllegalStateException e1 = assertThrows(IllegalStateException.class, n::getXInt32);
+        assertEquals("Field 'x_int32' is not set", e1.getMessage());
+
+        S s = new S();
+        s.addName("a");
+        IndexOutOfBoundsException e2 = assertThrows(IndexOutOfBoundsException.class, () -> s.getNameAt(1));
+        assertEquals("Index 1 is out of the list size (1) for field 'names'", e2.getMessage());
+    }
 }
@@ -181,6 +181,54 @@ public class MessagesTest {
         assertFalse(m.getX().hasB());
     }
 
+    @Test
+    public void testRepeatedMessagesPooling() throws Exception {
+        M m = new M();
+        for (int i = 0; i < 100; i++) {
+            m.addItem().setK("k" + i).setV("v" + i);
+        }
+        M.KV first = m.getItemAt(0);
+
+        List<String> keys = new ArrayList<>();
+        m.forEachItem(kv -> keys.add(kv.getK()));
+        assertEquals(100, keys.size());
+        assertEquals("k99", keys.get(99));
+        assertEquals("v50", m.getItemsList().get(50).getV());
+
+        // The items are reused once cleared
+        m.clear();
+        assertEquals(0, m.getItemsList().size());
+        assertSame(first, m.addItem());
+        assertFalse(first.hasK());
+        assertThrows(IndexOutOfBoundsException.class, () -> m.getItemAt(1));
+    }
+
+    @Test
+    public void testClearOnlySetFields() throws Exception {
+        M m = new M();
+        m.setX().setA("a");
+        m.addItem().setK("k1").setV("v1").setXx().setN(1);
+        m.addItem().setK("k2").setV("v2");
+
+        // Reuse the message, and its pooled items, for a sparser one
+        M sparse = new M();
+        sparse.addItem().setK("k3").setV("v3");
+        m.parseFrom(sparse.toByteArray());
+        assertFalse(m.hasX());
+        assertEquals(1, m.getItemsCount());
+        assertEquals("k3", m.getItemAt(0).getK());
+        assertFalse(m.getItemAt(0).hasXx());
+
+        m.clearItems();
+        m.clear();
+        assertEquals(0, m.getItemsCount());
+        m.setX();
+        assertFalse(m.getX().hasA());
+        m.addItem();
+        assertFalse(m.getItemAt(0).hasK());
+        assertFalse(m.getItemAt(0).hasXx());
+    }
+
     @Test
     public void testByteArrays() throws Exception {
         M lp1 = new M();
@@ -201,4 +249,32 @@ public class MessagesTest {
         assertEquals("a", parsed.getX().getA());
         assertEquals("b", parsed.getX().getB());
     }
+
+    @Test
+    public void testNestedMutationAfterSerializedSize() throws Exception {
+        M lpm = new M();
+        lpm.setX().setA("a");
+        M.KV kv = lpm.addItem().setK("k1").setV("v1");
+        int size = lpm.getSerializedSize();
+
+        // Mutating the nested messages must invalidate the size cached by the parents
+        lpm.getX().setB("bbb");
+        kv.setXx().setN(5);
+        assertNotEquals(size, lpm.getSerializedSize());
+
+        Messages.M pbm = Messages.M.newBuilder()
+                .setX(Messages.X.newBuilder().setA("a").setB("bbb"))
+                .addItems(Messages.M.KV.newBuilder().setK("k1").setV("v1")
+                        .setXx(Messages.M.KV.XX.newBuilder().setN(5)))
+                .build();
+        assertEquals(pbm.getSerializedSize(), lpm.getSerializedSize());
+
+        lpm.writeTo(bb1);
+        assertEquals(pbm.getSerializedSize(), bb1.readableBytes());
+        pbm.writeTo(CodedOutputStream.newInstance(b2));
+        assertArrayEquals(b1, b2);
+
+        kv.getXx().clearN();
+        assertEquals(pbm.getSerializedSize() - 2, lpm.getSerializedSize());
+    }
 }
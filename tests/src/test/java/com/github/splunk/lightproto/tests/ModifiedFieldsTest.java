@@ -0,0 +1,197 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import com.github.splunk.lightproto.tests.copy.AddressBook;
+import com.github.splunk.lightproto.tests.copy.Person;
+import com.github.splunk.lightproto.tests.copy.Sample;
+import com.google.protobuf.CodedOutputStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The messages generated with copyUnmodifiedFields copy the fields left unmodified since parsing, in their parsed
+ * order, and re-encode the modified ones.
+ */
+public class ModifiedFieldsTest {
+
+    @Test
+    public void testFieldsOutOfOrder() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        CodedOutputStream cos = CodedOutputStream.newInstance(os);
+        cos.writeString(3, "s");
+        cos.writeInt32(1, 5);
+        cos.flush();
+        byte[] serialized = os.toByteArray();
+
+        Sample lps = new Sample();
+        lps.parseFrom(serialized);
+        assertEquals(serialized.length, lps.getSerializedSize());
+        assertArrayEquals(serialized, lps.toByteArray());
+
+        // The modified field is encoded before the first parsed field with a greater number, and the parsed
+        // occurrence is dropped
+        lps.setA(6);
+        os.reset();
+        cos.writeInt32(1, 6);
+        cos.writeString(3, "s");
+        cos.flush();
+        assertEquals(os.size(), lps.getSerializedSize());
+        assertArrayEquals(os.toByteArray(), lps.toByteArray());
+
+        // A field that was not parsed is inserted in the same way
+        lps.parseFrom(serialized);
+        lps.addValue(1);
+        os.reset();
+        cos.writeInt32(2, 1);
+        cos.writeString(3, "s");
+        cos.writeInt32(1, 5);
+        cos.flush();
+        assertArrayEquals(os.toByteArray(), lps.toByteArray());
+    }
+
+    @Test
+    public void testModifiedRepeatedField() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        CodedOutputStream cos = CodedOutputStream.newInstance(os);
+        cos.writeInt32(2, 1);
+        cos.writeInt32(1, 5);
+        cos.writeInt32(2, 2);
+        cos.flush();
+        byte[] serialized = os.toByteArray();
+
+        // The items of an unmodified repeated field stay interleaved with the other fields
+        Sample lps = new Sample();
+        lps.parseFrom(serialized);
+        lps.setS("s");
+        os.reset();
+        cos.writeInt32(2, 1);
+        cos.writeInt32(1, 5);
+        cos.writeInt32(2, 2);
+        cos.writeString(3, "s");
+        cos.flush();
+        assertArrayEquals(os.toByteArray(), lps.toByteArray());
+
+        // Adding an item re-encodes all of them together
+        lps.parseFrom(serialized);
+        lps.addValue(3);
+        os.reset();
+        cos.writeInt32(2, 1);
+        cos.writeInt32(2, 2);
+        cos.writeInt32(2, 3);
+        cos.writeInt32(1, 5);
+        cos.flush();
+        assertEquals(os.size(), lps.getSerializedSize());
+        assertArrayEquals(os.toByteArray(), lps.toByteArray());
+    }
+
+    @Test
+    public void testPartiallyModifiedRepeatedMessages() throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        CodedOutputStream cos = CodedOutputStream.newInstance(os);
+        cos.writeInt32(2, 0);
+        cos.writeString(1, "a");
+        cos.flush();
+        byte[] person0 = os.toByteArray();
+        AddressBookProtos.Person person1 = AddressBookProtos.Person.newBuilder().setName("b").setId(1).build();
+        os.reset();
+        cos.writeInt32(2, 2);
+        cos.writeString(3, "c@example.com");
+        cos.writeString(1, "c");
+        cos.flush();
+        byte[] person2 = os.toByteArray();
+
+        os.reset();
+        cos.writeByteArray(1, person0);
+        cos.writeMessage(1, person1);
+        cos.writeByteArray(1, person2);
+        cos.flush();
+
+        AddressBook lpab = new AddressBook();
+        lpab.parseFrom(os.toByteArray());
+        lpab.getPersonAt(1).setEmail("b@example.com");
+        lpab.getPersonAt(2).clearEmail();
+
+        // The untouched item is copied as it was parsed, and each modified one only re-encodes its modified fields
+        os.reset();
+        cos.writeInt32(2, 2);
+        cos.writeString(1, "c");
+        cos.flush();
+        byte[] modifiedPerson2 = os.toByteArray();
+        os.reset();
+        cos.writeByteArray(1, person0);
+        cos.writeMessage(1, person1.toBuilder().setEmail("b@example.com").build());
+        cos.writeByteArray(1, modifiedPerson2);
+        cos.flush();
+        assertEquals(os.size(), lpab.getSerializedSize());
+        assertArrayEquals(os.toByteArray(), lpab.toByteArray());
+    }
+
+    @Test
+    public void testAddedItems() throws Exception {
+        AddressBookProtos.AddressBook pbab = AddressBookProtos.AddressBook.newBuilder()
+                .addPerson(AddressBookProtos.Person.newBuilder().setName("a").setId(0))
+                .build();
+        AddressBook lpab = new AddressBook();
+        lpab.parseFrom(pbab.toByteArray());
+        lpab.getSerializedSize();
+
+        lpab.addPerson().setName("added").setId(10);
+        AddressBookProtos.AddressBook expected = pbab.toBuilder()
+                .addPerson(AddressBookProtos.Person.newBuilder().setName("added").setId(10))
+                .build();
+        assertEquals(expected.getSerializedSize(), lpab.getSerializedSize());
+        assertArrayEquals(expected.toByteArray(), lpab.toByteArray());
+    }
+
+    @Test
+    public void testReparseAndClear() throws Exception {
+        byte[] serialized = AddressBookProtos.Person.newBuilder().setName("a").setId(0).build().toByteArray();
+        Person lpp = new Person();
+        lpp.parseFrom(serialized);
+        lpp.setId(100);
+
+        // Parsing again forgets the modifications
+        lpp.parseFrom(serialized);
+        assertArrayEquals(serialized, lpp.toByteArray());
+
+        // A cleared message is fully encoded
+        lpp.clear();
+        lpp.setId(0).setName("a");
+        assertArrayEquals(serialized, lpp.toByteArray());
+    }
+
+    @Test
+    public void testBufferNotRetainedByDefault() throws Exception {
+        // The messages generated without copyUnmodifiedFields do not read the parsed buffer again when they only
+        // have number fields
+        ByteBuf b = Unpooled.buffer();
+        Numbers lpn = new Numbers().setXInt32(5).setXDouble(2.5);
+        lpn.writeTo(b);
+        byte[] serialized = new byte[b.readableBytes()];
+        b.getBytes(0, serialized);
+
+        Numbers parsed = new Numbers();
+        parsed.parseFrom(b, b.readableBytes());
+        b.setZero(0, b.capacity());
+        assertArrayEquals(serialized, parsed.toByteArray());
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PeekTest {
+
+    @Test
+    public void testPeekNumbers() throws Exception {
+        NumbersOuterClass.Numbers pbn = NumbersOuterClass.Numbers.newBuilder()
+                .setXInt32(-1)
+                .setXSint64(-5)
+                .setXFixed64(3)
+                .setXDouble(4.0)
+                .setXBool(true)
+                .setEnum1(NumbersOuterClass.Enum1.X1_2)
+                .build();
+
+        // Message not starting at index 0
+        ByteBuf b = Unpooled.buffer();
+        b.writeBytes(new byte[]{1, 2, 3});
+        b.writeBytes(pbn.toByteArray());
+        int size = b.readableBytes() - 3;
+
+        assertEquals(-1, Numbers.peekXInt32(b, 3, size, 0));
+        assertEquals(-5, Numbers.peekXSint64(b, 3, size, 0));
+        assertEquals(3, Numbers.peekXFixed64(b, 3, size, 0));
+        assertEquals(4.0, Numbers.peekXDouble(b, 3, size, 0));
+        assertTrue(Numbers.peekXBool(b, 3, size, false));
+        assertEquals(Enum1.X1_2, Numbers.peekEnum1(b, 3, size, null));
+
+        // Absent fields return the provided default value
+        assertEquals(-100, Numbers.peekXFixed32(b, 3, size, -100));
+        assertEquals(1.5f, Numbers.peekXFloat(b, 3, size, 1.5f));
+        assertNull(Numbers.peekEnum2(b, 3, size, null));
+
+        // The buffer indexes are left untouched
+        assertEquals(0, b.readerIndex());
+        assertEquals(size + 3, b.writerIndex());
+    }
+
+    @Test
+    public void testPeekLastOccurrence() throws Exception {
+        ByteBuf b = Unpooled.buffer();
+        new Numbers().setXInt32(1).setXFixed32(2).writeTo(b);
+        Numbers.appendXInt32(b, 1000);
+
+        assertEquals(1000, Numbers.peekXInt32(b, 0, b.readableBytes(), 0));
+        assertEquals(2, Numbers.peekXFixed32(b, 0, b.readableBytes(), 0));
+    }
+
+    @Test
+    public void testPeekStringsAndBytes() throws Exception {
+        ByteBuf b = Unpooled.buffer();
+        S lps = new S().setId("id");
+        lps.addName("a");
+        lps.writeTo(b);
+        assertEquals("id", S.peekId(b, 0, b.readableBytes()));
+
+        b.clear();
+        S noId = new S();
+        noId.addName("a");
+        noId.writeTo(b);
+        assertNull(S.peekId(b, 0, b.readableBytes()));
+
+        b.clear();
+        B lpb = new B().setPayload("payload".getBytes(StandardCharsets.UTF_8));
+        lpb.addExtraItem(new byte[]{1, 2, 3});
+        lpb.writeTo(b);
+        ByteBuf payload = B.peekPayload(b, 0, b.readableBytes());
+        assertEquals("payload", payload.toString(StandardCharsets.UTF_8));
+        assertEquals(0, b.readerIndex());
+    }
+
+    @Test
+    public void testConcurrentPeek() throws Exception {
+        int count = 100;
+        ByteBuf b = Unpooled.buffer();
+        int[] offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = b.writerIndex();
+            S lps = new S().setId("id " + i);
+            lps.addName("name");
+            lps.writeTo(b);
+        }
+        offsets[count] = b.writerIndex();
+        ByteBuf shared = b.asReadOnly();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int n = 0; n < 100; n++) {
+                        for (int i = 0; i < count; i++) {
+                            assertEquals("id " + i, S.peekId(shared, offsets[i], offsets[i + 1] - offsets[i]));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, shared.readerIndex());
+    }
+}
@@ -485,4 +485,18 @@ public class RepeatedNumbersTest {
         assertEquals(-12L, parsed.getXSint64At(0));
         assertEquals(-13L, parsed.getXSint64At(1));
     }
+
+    @Test
+    public void testEmptyPacked() throws Exception {
+        RepeatedPacked lpn = new RepeatedPacked();
+        lpn.addXInt32(1);
+        lpn.clear();
+
+        RepeatedNumbers.RepeatedPacked pbn = RepeatedNumbers.RepeatedPacked.newBuilder().build();
+        assertEquals(pbn.getSerializedSize(), lpn.getSerializedSize());
+        assertEquals(0, lpn.getSerializedSize());
+
+        lpn.writeTo(bb1);
+        assertEquals(0, bb1.readableBytes());
+    }
 }
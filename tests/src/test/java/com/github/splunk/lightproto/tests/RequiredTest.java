@@ -102,6 +102,9 @@ public class RequiredTest {
 
         assertEquals(1, lpr.getA());
         assertEquals(3, lpr.getB());
+        // The unknown fields are kept until explicitly dropped
+        assertEquals(s1, lpr.getSerializedSize());
+        lpr.clearUnknownFields();
         assertTrue(lpr.getSerializedSize() < s1);
     }
 
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SerializedEditorTest {
+
+    private static ByteBuf serialize(NumbersOuterClass.Numbers pbn) {
+        // Message not starting at index 0
+        ByteBuf b = Unpooled.buffer();
+        b.writeBytes(new byte[]{1, 2, 3});
+        b.skipBytes(3);
+        b.writeBytes(pbn.toByteArray());
+        return b;
+    }
+
+    private static NumbersOuterClass.Numbers parse(ByteBuf b) throws Exception {
+        byte[] res = new byte[b.readableBytes()];
+        b.getBytes(b.readerIndex(), res);
+        return NumbersOuterClass.Numbers.parseFrom(res);
+    }
+
+    @Test
+    public void testPatchInPlace() throws Exception {
+        NumbersOuterClass.Numbers pbn = NumbersOuterClass.Numbers.newBuilder()
+                .setXInt32(1)
+                .setXSint64(-5)
+                .setXFixed64(3)
+                .setXDouble(4.0)
+                .setXBool(false)
+                .setEnum1(NumbersOuterClass.Enum1.X1_1)
+                .build();
+        ByteBuf b = serialize(pbn);
+        int size = b.readableBytes();
+
+        assertTrue(Numbers.patchXInt32(b, 3, size, 100));
+        assertTrue(Numbers.patchXSint64(b, 3, size, 5));
+        assertTrue(Numbers.patchXFixed64(b, 3, size, Long.MAX_VALUE));
+        assertTrue(Numbers.patchXDouble(b, 3, size, -1.5));
+        assertTrue(Numbers.patchXBool(b, 3, size, true));
+        assertTrue(Numbers.patchEnum1(b, 3, size, Enum1.X1_2));
+        assertEquals(size, b.readableBytes());
+
+        assertEquals(pbn.toBuilder()
+                .setXInt32(100)
+                .setXSint64(5)
+                .setXFixed64(Long.MAX_VALUE)
+                .setXDouble(-1.5)
+                .setXBool(true)
+                .setEnum1(NumbersOuterClass.Enum1.X1_2)
+                .build(), parse(b));
+    }
+
+    @Test
+    public void testPatchRefused() throws Exception {
+        NumbersOuterClass.Numbers pbn = NumbersOuterClass.Numbers.newBuilder()
+                .setXInt32(1)
+                .build();
+        ByteBuf b = serialize(pbn);
+        int size = b.readableBytes();
+
+        // Different encoded size
+        assertFalse(Numbers.patchXInt32(b, 3, size, 1000));
+        // Missing field
+        assertFalse(Numbers.patchXFixed32(b, 3, size, 5));
+        assertEquals(pbn, parse(b));
+    }
+
+    @Test
+    public void testAppend() throws Exception {
+        NumbersOuterClass.Numbers pbn = NumbersOuterClass.Numbers.newBuilder()
+                .setXInt32(1)
+                .setXFixed32(2)
+                .build();
+        ByteBuf b = serialize(pbn);
+
+        int size = b.readableBytes();
+        size += Numbers.appendXInt32(b, 1000);
+        size += Numbers.appendXFloat(b, 2.5f);
+        assertEquals(size, b.readableBytes());
+
+        // The last occurrence is the one patched
+        assertTrue(Numbers.patchXInt32(b, 3, size, 2000));
+
+        NumbersOuterClass.Numbers expected = pbn.toBuilder()
+                .setXInt32(2000)
+                .setXFloat(2.5f)
+                .build();
+        assertEquals(expected, parse(b));
+
+        Numbers lpn = new Numbers();
+        lpn.parseFrom(b, b.readableBytes());
+        assertEquals(2000, lpn.getXInt32());
+        assertEquals(2, lpn.getXFixed32());
+        assertEquals(2.5f, lpn.getXFloat());
+    }
+
+    @Test
+    public void testAppendRepeated() throws Exception {
+        S lps = new S().setId("id");
+        lps.addName("a");
+        ByteBuf b = Unpooled.buffer();
+        lps.writeTo(b);
+
+        S.appendName(b, "b");
+        S.appendId(b, "new-id");
+
+        S parsed = new S();
+        parsed.parseFrom(b, b.readableBytes());
+        assertEquals("new-id", parsed.getId());
+        assertEquals(2, parsed.getNamesCount());
+        assertEquals("a", parsed.getNameAt(0));
+        assertEquals("b", parsed.getNameAt(1));
+    }
+}
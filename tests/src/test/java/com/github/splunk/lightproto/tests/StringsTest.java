@@ -115,4 +115,32 @@ public class StringsTest {
         assertEquals("d", lps.getNameAt(0));
         assertEquals("e", lps.getNameAt(1));
     }
+
+    @Test
+    public void testParsedAndAddedStrings() throws Exception {
+        S lps = new S();
+        for (int i = 0; i < 10; i++) {
+            lps.addName("n" + i);
+        }
+        byte[] serialized = lps.toByteArray();
+
+        S parsed = new S();
+        parsed.parseFrom(serialized);
+        parsed.addName("λ");
+        assertEquals(11, parsed.getNamesCount());
+        assertEquals("λ", parsed.getNameAt(10));
+        assertEquals("n0", parsed.getNameAt(0));
+        assertEquals("n9", parsed.getNameAt(9));
+
+        S expected = new S();
+        expected.parseFrom(serialized);
+        expected.addName("λ");
+        assertArrayEquals(expected.toByteArray(), parsed.toByteArray());
+
+        // Items decoded before a clear must not leak into the reused slots
+        parsed.parseFrom(new S().addAllNames(Arrays.asList("x", "y")).toByteArray());
+        assertEquals(2, parsed.getNamesCount());
+        assertEquals("x", parsed.getNameAt(0));
+        assertEquals("y", parsed.getNameAt(1));
+    }
 }
@@ -0,0 +1,286 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The table-driven messages must encode and decode the same bytes as the unrolled ones.
+ */
+public class TableDrivenTest {
+
+    private static Numbers numbers() {
+        return new Numbers()
+                .setXInt32(-1)
+                .setXInt64(1L << 40)
+                .setXUint32(300)
+                .setXUint64(-5L)
+                .setXSint32(-3)
+                .setXSint64(-1L << 50)
+                .setXFixed32(7)
+                .setXFixed64(8)
+                .setXSfixed32(-9)
+                .setXSfixed64(-10)
+                .setXFloat(11.5f)
+                .setXDouble(-12.25)
+                .setXBool(true)
+                .setEnum1(Enum1.X1_2)
+                .setEnum2(Numbers.Enum2.X2_1);
+    }
+
+    private static com.github.splunk.lightproto.tests.table.Numbers tableNumbers() {
+        return new com.github.splunk.lightproto.tests.table.Numbers()
+                .setXInt32(-1)
+                .setXInt64(1L << 40)
+                .setXUint32(300)
+                .setXUint64(-5L)
+                .setXSint32(-3)
+                .setXSint64(-1L << 50)
+                .setXFixed32(7)
+                .setXFixed64(8)
+                .setXSfixed32(-9)
+                .setXSfixed64(-10)
+                .setXFloat(11.5f)
+                .setXDouble(-12.25)
+                .setXBool(true)
+                .setEnum1(com.github.splunk.lightproto.tests.table.Enum1.X1_2)
+                .setEnum2(com.github.splunk.lightproto.tests.table.Numbers.Enum2.X2_1);
+    }
+
+    @Test
+    public void testNumbers() throws Exception {
+        byte[] expected = numbers().toByteArray();
+        com.github.splunk.lightproto.tests.table.Numbers tn = tableNumbers();
+        assertEquals(expected.length, tn.getSerializedSize());
+        assertArrayEquals(expected, tn.toByteArray());
+
+        com.github.splunk.lightproto.tests.table.Numbers parsed = new com.github.splunk.lightproto.tests.table.Numbers();
+        ByteBuf b = Unpooled.directBuffer().writeBytes(expected);
+        parsed.parseFrom(b, b.readableBytes());
+        assertEquals(0, b.readableBytes());
+        assertEquals(-1, parsed.getXInt32());
+        assertEquals(1L << 40, parsed.getXInt64());
+        assertEquals(300, parsed.getXUint32());
+        assertEquals(-5L, parsed.getXUint64());
+        assertEquals(-3, parsed.getXSint32());
+        assertEquals(-1L << 50, parsed.getXSint64());
+        assertEquals(7, parsed.getXFixed32());
+        assertEquals(8, parsed.getXFixed64());
+        assertEquals(-9, parsed.getXSfixed32());
+        assertEquals(-10, parsed.getXSfixed64());
+        assertEquals(11.5f, parsed.getXFloat());
+        assertEquals(-12.25, parsed.getXDouble());
+        assertTrue(parsed.isXBool());
+        assertEquals(com.github.splunk.lightproto.tests.table.Enum1.X1_2, parsed.getEnum1());
+        assertEquals(com.github.splunk.lightproto.tests.table.Numbers.Enum2.X2_1, parsed.getEnum2());
+
+        // Re-encoded once modified
+        parsed.setXInt32(5);
+        Numbers n = new Numbers();
+        n.parseFrom(parsed.toByteArray());
+        assertArrayEquals(numbers().setXInt32(5).toByteArray(), n.toByteArray());
+    }
+
+    @Test
+    public void testRepeatedNumbers() throws Exception {
+        Repeated r = new Repeated();
+        RepeatedPacked rp = new RepeatedPacked();
+        com.github.splunk.lightproto.tests.table.Repeated tr = new com.github.splunk.lightproto.tests.table.Repeated();
+        com.github.splunk.lightproto.tests.table.RepeatedPacked trp =
+                new com.github.splunk.lightproto.tests.table.RepeatedPacked();
+        for (int i = 0; i < 200; i++) {
+            r.addXInt32(i * 1000);
+            r.addXSint64(-i);
+            r.addXDouble(i / 3.0);
+            r.addEnum1(Repeated.Enum.values()[i % 3]);
+            tr.addXInt32(i * 1000);
+            tr.addXSint64(-i);
+            tr.addXDouble(i / 3.0);
+            tr.addEnum1(com.github.splunk.lightproto.tests.table.Repeated.Enum.values()[i % 3]);
+
+            rp.addEnum1(RepeatedPacked.Enum.values()[i % 3]);
+            rp.addXSint32(-i);
+            rp.addXFloat(i);
+            rp.addXInt32(i << 20);
+            trp.addEnum1(com.github.splunk.lightproto.tests.table.RepeatedPacked.Enum.values()[i % 3]);
+            trp.addXSint32(-i);
+            trp.addXFloat(i);
+            trp.addXInt32(i << 20);
+        }
+
+        assertArrayEquals(r.toByteArray(), tr.toByteArray());
+        assertEquals(rp.getSerializedSize(), trp.getSerializedSize());
+        assertArrayEquals(rp.toByteArray(), trp.toByteArray());
+
+        com.github.splunk.lightproto.tests.table.Repeated parsedR = new com.github.splunk.lightproto.tests.table.Repeated();
+        parsedR.parseFrom(r.toByteArray());
+        assertEquals(200, parsedR.getXInt32sCount());
+        assertEquals(199 * 1000, parsedR.getXInt32At(199));
+        assertEquals(-199, parsedR.getXSint64At(199));
+        assertEquals(199 / 3.0, parsedR.getXDoubleAt(199));
+        assertEquals(com.github.splunk.lightproto.tests.table.Repeated.Enum.X2_1, parsedR.getEnum1At(199));
+
+        com.github.splunk.lightproto.tests.table.RepeatedPacked parsedRp =
+                new com.github.splunk.lightproto.tests.table.RepeatedPacked();
+        parsedRp.parseFrom(rp.toByteArray());
+        assertEquals(200, parsedRp.getXInt32sCount());
+        assertEquals(199 << 20, parsedRp.getXInt32At(199));
+        assertEquals(-199, parsedRp.getXSint32At(199));
+        assertEquals(199f, parsedRp.getXFloatAt(199));
+        assertEquals(com.github.splunk.lightproto.tests.table.RepeatedPacked.Enum.X2_1, parsedRp.getEnum1At(199));
+
+        // Parsers must accept both the packed and unpacked encodings
+        parsedR.parseFrom(new byte[]{0x0A, 3, 1, 2, 3, 0x08, 4});
+        assertEquals(4, parsedR.getXInt32sCount());
+        assertEquals(3, parsedR.getXInt32At(2));
+        assertEquals(4, parsedR.getXInt32At(3));
+    }
+
+    @Test
+    public void testMessages() throws Exception {
+        M m = new M();
+        m.setX().setA("a").setB("b");
+        com.github.splunk.lightproto.tests.table.M tm = new com.github.splunk.lightproto.tests.table.M();
+        tm.setX().setA("a").setB("b");
+        for (int i = 0; i < 10; i++) {
+            M.KV kv = m.addItem().setK("k" + i).setV("v" + i);
+            com.github.splunk.lightproto.tests.table.M.KV tkv = tm.addItem().setK("k" + i).setV("v" + i);
+            if (i % 2 == 0) {
+                kv.setXx().setN(i);
+                tkv.setXx().setN(i);
+            }
+        }
+
+        byte[] expected = m.toByteArray();
+        assertEquals(expected.length, tm.getSerializedSize());
+        assertArrayEquals(expected, tm.toByteArray());
+
+        com.github.splunk.lightproto.tests.table.M parsed = new com.github.splunk.lightproto.tests.table.M();
+        parsed.parseFrom(expected);
+        assertEquals("b", parsed.getX().getB());
+        assertEquals(10, parsed.getItemsCount());
+        assertEquals("v9", parsed.getItemAt(9).getV());
+        assertEquals(8, parsed.getItemAt(8).getXx().getN());
+        assertFalse(parsed.getItemAt(9).hasXx());
+        assertArrayEquals(expected, parsed.toByteArray());
+
+        com.github.splunk.lightproto.tests.table.M copy = new com.github.splunk.lightproto.tests.table.M().copyFrom(parsed);
+        assertArrayEquals(expected, copy.toByteArray());
+
+        // Missing required fields
+        tm.addItem().setK("k");
+        assertThrows(IllegalStateException.class, tm::toByteArray);
+    }
+
+    @Test
+    public void testUnrolledContainer() throws Exception {
+        com.github.splunk.lightproto.tests.table.Container c = new com.github.splunk.lightproto.tests.table.Container();
+        c.setM().setX().setA("a");
+        c.getM().addItem().setK("k").setV("v").setXx().setN(5);
+        c.addItem().setId("id-0");
+        c.addItem().setId("id-1").addName("n");
+        byte[] serialized = c.toByteArray();
+
+        // The heap buffer is walked by the container, from an array offset, and the table-driven messages are
+        // parsed from the buffer itself
+        byte[] array = new byte[serialized.length + 5];
+        System.arraycopy(serialized, 0, array, 5, serialized.length);
+        ByteBuf b = Unpooled.wrappedBuffer(array, 5, serialized.length);
+        assertEquals(5, b.arrayOffset());
+
+        com.github.splunk.lightproto.tests.table.Container parsed = new com.github.splunk.lightproto.tests.table.Container();
+        parsed.parseFrom(b, serialized.length);
+        assertEquals("a", parsed.getM().getX().getA());
+        assertEquals(5, parsed.getM().getItemAt(0).getXx().getN());
+        assertEquals("id-0", parsed.getItemAt(0).getId());
+        assertEquals("n", parsed.getItemAt(1).getNameAt(0));
+        assertArrayEquals(serialized, parsed.toByteArray());
+    }
+
+    @Test
+    public void testStringsAndBytes() throws Exception {
+        S s = new S().setId("id");
+        s.addName("a");
+        s.addName("λ");
+        com.github.splunk.lightproto.tests.table.S ts = new com.github.splunk.lightproto.tests.table.S().setId("id");
+        ts.addName("a");
+        ts.addName("λ");
+        assertArrayEquals(s.toByteArray(), ts.toByteArray());
+
+        B b = new B().setPayload(new byte[]{1, 2, 3});
+        b.addExtraItem(new byte[]{4});
+        com.github.splunk.lightproto.tests.table.B tb = new com.github.splunk.lightproto.tests.table.B()
+                .setPayload(new byte[]{1, 2, 3});
+        tb.addExtraItem(new byte[]{4});
+        assertArrayEquals(b.toByteArray(), tb.toByteArray());
+
+        com.github.splunk.lightproto.tests.table.S parsed = new com.github.splunk.lightproto.tests.table.S();
+        parsed.parseFrom(s.toByteArray());
+        assertEquals("id", parsed.getId());
+        assertEquals("λ", parsed.getNameAt(1));
+    }
+
+    @Test
+    public void testProjectedAndIncrementalParse() throws Exception {
+        byte[] serialized = numbers().toByteArray();
+        com.github.splunk.lightproto.tests.table.Numbers parsed = new com.github.splunk.lightproto.tests.table.Numbers();
+        ByteBuf b = Unpooled.wrappedBuffer(serialized);
+        parsed.parseFrom(b, serialized.length, com.github.splunk.lightproto.tests.table.Numbers.FIELD_X_INT64
+                | com.github.splunk.lightproto.tests.table.Numbers.FIELD_X_DOUBLE);
+        assertEquals(0, b.readableBytes());
+        assertFalse(parsed.hasXInt32());
+        assertEquals(1L << 40, parsed.getXInt64());
+        assertEquals(-12.25, parsed.getXDouble());
+        assertFalse(parsed.hasEnum2());
+
+        parsed.clear();
+        b = Unpooled.buffer();
+        int status = com.github.splunk.lightproto.tests.table.Numbers.PARSE_NEED_MORE;
+        for (int i = 0; i < serialized.length; i++) {
+            assertEquals(com.github.splunk.lightproto.tests.table.Numbers.PARSE_NEED_MORE, status);
+            b.writeByte(serialized[i]);
+            status = parsed.parseIncrementally(b, serialized.length);
+        }
+        assertEquals(com.github.splunk.lightproto.tests.table.Numbers.PARSE_DONE, status);
+        assertArrayEquals(serialized, parsed.toByteArray());
+    }
+
+    @Test
+    public void testUnknownFields() throws Exception {
+        Repeated r = new Repeated();
+        r.addXInt32(1);
+        r.addXUint32(2);
+        r.addXFloat(3);
+
+        com.github.splunk.lightproto.tests.table.Repeated tr = new com.github.splunk.lightproto.tests.table.Repeated();
+        tr.parseFrom(r.toByteArray());
+        assertTrue(tr.hasUnknownFields());
+        assertArrayEquals(r.toByteArray(), tr.toByteArray());
+
+        // Modified messages are re-encoded, with the unknown fields last
+        tr.addXInt32(4);
+        Repeated parsed = new Repeated();
+        parsed.parseFrom(tr.toByteArray());
+        assertEquals(2, parsed.getXInt32sCount());
+        assertEquals(4, parsed.getXInt32At(1));
+        assertEquals(2, parsed.getXUint32At(0));
+        assertEquals(3f, parsed.getXFloatAt(0));
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UnknownFieldsTest {
+
+    @Test
+    public void testUnknownFieldsAreCopied() throws Exception {
+        // Unknown fields of each wire type, in between the known ones
+        byte[] serialized = UnknownFields.NewVersion.newBuilder()
+                .setName("name")
+                .setId(5)
+                .setTimestamp(123456789L)
+                .addTags("a")
+                .addTags("b")
+                .setChild(UnknownFields.NewVersion.newBuilder().setName("child").setFlags(3))
+                .setFlags(0xff)
+                .build().toByteArray();
+
+        OldVersion lpm = new OldVersion();
+        lpm.parseFrom(serialized);
+        assertTrue(lpm.hasUnknownFields());
+        assertEquals("name", lpm.getName());
+        assertEquals(5, lpm.getId());
+
+        assertEquals(serialized.length, lpm.getSerializedSize());
+        assertArrayEquals(serialized, lpm.toByteArray());
+    }
+
+    @Test
+    public void testModifiedKnownFields() throws Exception {
+        UnknownFields.NewVersion pbm = UnknownFields.NewVersion.newBuilder()
+                .setId(5)
+                .setTimestamp(123456789L)
+                .addTags("a")
+                .build();
+
+        OldVersion lpm = new OldVersion();
+        lpm.parseFrom(pbm.toByteArray());
+        lpm.setId(6);
+        lpm.setName("name");
+
+        assertEquals(pbm.toBuilder().setId(6).setName("name").build(),
+                UnknownFields.NewVersion.parseFrom(lpm.toByteArray()));
+    }
+
+    @Test
+    public void testUnknownEnumValue() throws Exception {
+        UnknownFields.NewVersion pbm = UnknownFields.NewVersion.newBuilder()
+                .setName("name")
+                .setLevel(UnknownFields.NewVersion.Level.CRITICAL)
+                .build();
+        byte[] serialized = pbm.toByteArray();
+
+        // The value has no constant in the old version of the enum
+        OldVersion lpm = new OldVersion();
+        lpm.parseFrom(serialized);
+        assertFalse(lpm.hasLevel());
+        assertTrue(lpm.hasUnknownFields());
+        assertArrayEquals(serialized, lpm.toByteArray());
+
+        lpm.setName("other");
+        assertEquals(pbm.toBuilder().setName("other").build(), UnknownFields.NewVersion.parseFrom(lpm.toByteArray()));
+
+        // A known value is parsed as usual
+        lpm.parseFrom(pbm.toBuilder().setLevel(UnknownFields.NewVersion.Level.HIGH).build().toByteArray());
+        assertEquals(OldVersion.Level.HIGH, lpm.getLevel());
+        assertFalse(lpm.hasUnknownFields());
+    }
+
+    @Test
+    public void testClearUnknownFields() throws Exception {
+        byte[] serialized = UnknownFields.NewVersion.newBuilder()
+                .setName("name")
+                .setTimestamp(123456789L)
+                .setFlags(0xff)
+                .build().toByteArray();
+
+        OldVersion lpm = new OldVersion();
+        lpm.parseFrom(serialized);
+        lpm.getSerializedSize();
+        lpm.clearUnknownFields();
+        assertFalse(lpm.hasUnknownFields());
+        assertEquals(UnknownFields.NewVersion.newBuilder().setName("name").build(),
+                UnknownFields.NewVersion.parseFrom(lpm.toByteArray()));
+
+        lpm.parseFrom(serialized);
+        assertTrue(lpm.hasUnknownFields());
+        lpm.clear();
+        assertFalse(lpm.hasUnknownFields());
+        assertEquals(0, lpm.getSerializedSize());
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Copyright 2020 Splunk Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.splunk.lightproto.tests;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ViewTest {
+
+    @Test
+    public void testNumbers() throws Exception {
+        NumbersOuterClass.Numbers pbn = NumbersOuterClass.Numbers.newBuilder()
+                .setXInt32(-1)
+                .setXUint64(Long.MAX_VALUE)
+                .setXSint32(-5)
+                .setXFixed32(3)
+                .setXSfixed64(-4)
+                .setXFloat(1.5f)
+                .setXBool(true)
+                .setEnum2(NumbersOuterClass.Numbers.Enum2.X2_2)
+                .build();
+
+        Numbers.NumbersView view = new Numbers.NumbersView()
+                .wrap(Unpooled.wrappedBuffer(pbn.toByteArray()));
+
+        assertEquals(-1, view.getXInt32());
+        assertEquals(Long.MAX_VALUE, view.getXUint64());
+        assertEquals(-5, view.getXSint32());
+        assertEquals(3, view.getXFixed32());
+        assertEquals(-4, view.getXSfixed64());
+        assertEquals(1.5f, view.getXFloat());
+        assertTrue(view.isXBool());
+        assertEquals(Numbers.Enum2.X2_2, view.getEnum2());
+
+        assertFalse(view.hasXInt64());
+        assertFalse(view.hasEnum1());
+        try {
+            view.getXDouble();
+            fail("Should fail");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testDefaultValue() throws Exception {
+        ByteBuf b = Unpooled.buffer();
+        new R().setA(1).writeTo(b);
+
+        R.RView view = new R.RView().wrap(b);
+        assertEquals(1, view.getA());
+        assertFalse(view.hasC());
+        assertEquals(5, view.getC());
+    }
+
+    @Test
+    public void testNestedMessages() throws Exception {
+        Messages.M pbm = Messages.M.newBuilder()
+                .setX(Messages.X.newBuilder().setA("a").build())
+                .addItems(Messages.M.KV.newBuilder().setK("k").setV("v").build())
+                .build();
+
+        M.MView view = new M.MView().wrap(Unpooled.wrappedBuffer(pbm.toByteArray()));
+        assertTrue(view.hasX());
+        assertEquals("a", view.getX().getA());
+        assertFalse(view.getX().hasB());
+    }
+
+    @Test
+    public void testRepeatedFields() throws Exception {
+        ByteBuf b = Unpooled.buffer();
+        S s = new S().setId("id");
+        s.addName("a");
+        s.addName("b");
+        s.writeTo(b);
+
+        S.SView view = new S.SView().wrap(b);
+        assertEquals("id", view.getId());
+        assertEquals(2, view.getNamesCount());
+        assertEquals("a", view.getNameAt(0));
+        assertEquals("b", view.getNameAt(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.getNameAt(2));
+
+        M m = new M();
+        m.addItem().setK("k1").setV("v1");
+        m.addItem().setK("k2").setV("v2");
+        M.MView mv = new M.MView().wrap(Unpooled.wrappedBuffer(m.toByteArray()));
+        assertFalse(mv.hasX());
+        assertEquals(2, mv.getItemsCount());
+        assertEquals("k1", mv.getItemAt(0).getK());
+        assertEquals("v2", mv.getItemAt(1).getV());
+
+        B pb = new B();
+        pb.addExtraItem(new byte[]{1, 2, 3});
+        pb.addExtraItem(new byte[0]);
+        B.BView bv = new B.BView().wrap(Unpooled.wrappedBuffer(pb.toByteArray()));
+        assertEquals(2, bv.getExtraItemsCount());
+        assertEquals(3, bv.getExtraItemSizeAt(0));
+        assertEquals(Unpooled.wrappedBuffer(new byte[]{1, 2, 3}), bv.getExtraItemSliceAt(0));
+        assertEquals(0, bv.getExtraItemSizeAt(1));
+
+        // Rewrapped on a message without items
+        b.clear();
+        new S().setId("other").writeTo(b);
+        view.wrap(b);
+        assertEquals(0, view.getNamesCount());
+    }
+
+    @Test
+    public void testPackedFields() throws Exception {
+        RepeatedPacked rp = new RepeatedPacked();
+        rp.addXInt64(-1L);
+        rp.addXInt64(1L << 40);
+        rp.addXFixed32(7);
+        rp.addXDouble(2.5);
+        rp.addXDouble(-1.0);
+        ByteBuf b = Unpooled.buffer();
+        rp.writeTo(b);
+        // An item appended unpacked after the packed ones
+        RepeatedPacked.appendXInt64(b, 3L);
+
+        RepeatedPacked.RepeatedPackedView view = new RepeatedPacked.RepeatedPackedView().wrap(b);
+        assertEquals(3, view.getXInt64sCount());
+        assertEquals(-1L, view.getXInt64At(0));
+        assertEquals(1L << 40, view.getXInt64At(1));
+        assertEquals(3L, view.getXInt64At(2));
+        assertEquals(1, view.getXFixed32sCount());
+        assertEquals(7, view.getXFixed32At(0));
+        assertEquals(2, view.getXDoublesCount());
+        assertEquals(-1.0, view.getXDoubleAt(1));
+        assertEquals(0, view.getXBoolsCount());
+
+        // The unknown enum values are skipped, as when parsing
+        EnumTest2Repeated e2 = new EnumTest2Repeated();
+        EnumTest2Packed e2p = new EnumTest2Packed();
+        for (E2 e : new E2[]{E2.A2, E2.D2, E2.C2}) {
+            e2.addE(e);
+            e2p.addE(e);
+        }
+        for (byte[] serialized : new byte[][]{e2.toByteArray(), e2p.toByteArray()}) {
+            EnumTest1Packed.EnumTest1PackedView ev = new EnumTest1Packed.EnumTest1PackedView()
+                    .wrap(Unpooled.wrappedBuffer(serialized));
+            assertEquals(2, ev.getEsCount());
+            assertEquals(E1.A1, ev.getEAt(0));
+            assertEquals(E1.C1, ev.getEAt(1));
+        }
+    }
+
+    @Test
+    public void testRewrap() throws Exception {
+        // Several messages in the same buffer, read one after the other with the same view
+        ByteBuf b = Unpooled.buffer();
+        int[] offsets = new int[10];
+        for (int i = 0; i < 10; i++) {
+            offsets[i] = b.writerIndex();
+            new S().setId("id-" + i).writeTo(b);
+        }
+
+        S.SView view = new S.SView();
+        for (int i = 0; i < 10; i++) {
+            int end = i < 9 ? offsets[i + 1] : b.writerIndex();
+            view.wrap(b, offsets[i], end - offsets[i]);
+            assertEquals("id-" + i, view.getId());
+        }
+        assertEquals(0, b.readerIndex());
+    }
+}